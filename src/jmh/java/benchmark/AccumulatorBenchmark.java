@@ -0,0 +1,104 @@
+package benchmark;
+
+import features.AuthorHistory;
+import features.Feature;
+import features.PathAccumulator;
+import mydatatype.StringPool;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Accumulatori per classe delle feature di processo: ogni invocazione applica una sequenza di modifiche
+ * (classe, righe, autore) come quella prodotta dai diff dei commit, divisa in release.
+ * {@link PathAccumulator} raccoglie le feature di una release; {@link AuthorHistory} unisce gli autori delle release
+ * per NAUTH cumulativo, traducendo gli id locali della release in quelli del registro del progetto come fa FeatureCalculator.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccumulatorBenchmark {
+    private static final String[] AUTHORS = {"Alice", "Bob", "Carol", "Dave", "Eve", "Frank", "Grace", "Heidi"};
+
+    @Param({"500"})
+    public int classes;
+
+    @Param({"20000"})
+    public int edits;
+
+    @Param({"20"})
+    public int releases;
+
+    private String[] classNames;
+    private StringPool classPaths;
+    private int[] pathIds;
+    private int[] values;
+    private PersonIdent[] authorIdents;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        this.classNames = new String[this.edits];
+        this.pathIds = new int[this.edits];
+        this.values = new int[this.edits];
+        this.authorIdents = new PersonIdent[this.edits];
+        this.classPaths = new StringPool();
+        for(int i = 0; i < this.edits; i++) {
+            this.classNames[i] = "src/main/java/pkg" + random.nextInt(10) + "/Class" + random.nextInt(this.classes) + ".java";
+            this.pathIds[i] = this.classPaths.intern(this.classNames[i]);
+            this.values[i] = random.nextInt(200) - 50;
+            String author = AUTHORS[random.nextInt(AUTHORS.length)];
+            this.authorIdents[i] = new PersonIdent(author, author.toLowerCase(Locale.ROOT) + "@example.org");
+        }
+    }
+
+    @Benchmark
+    public int pathAccumulator() {
+        PathAccumulator accumulator = new PathAccumulator();
+        for(int i = 0; i < this.edits; i++) {
+            accumulator.add(this.classPaths.intern(this.classNames[i]), this.values[i], this.values[i], this.values[i], this.authorIdents[i]);
+        }
+        int total = 0;
+        for(int pathId = 0; pathId < this.classPaths.size(); pathId++) {
+            if(!accumulator.isTouched(pathId)) continue;
+            for(Feature feature : Feature.values()) {
+                if(feature != Feature.SIZE) total += accumulator.get(feature, pathId);
+            }
+        }
+        return total;
+    }
+
+    @Benchmark
+    public int authorHistory() {
+        AuthorHistory history = new AuthorHistory();
+        int perRelease = Math.max(1, this.edits / this.releases);
+        int total = 0;
+        for(int start = 0; start < this.edits; start += perRelease) {
+            PathAccumulator accumulator = new PathAccumulator();
+            int end = Math.min(this.edits, start + perRelease);
+            for(int i = start; i < end; i++) {
+                accumulator.add(this.pathIds[i], this.values[i], this.values[i], this.values[i], this.authorIdents[i]);
+            }
+            List<PersonIdent> idents = accumulator.getAuthorIdents();
+            int[] authorIds = new int[idents.size()];
+            for(int i = 0; i < authorIds.length; i++) {
+                authorIds[i] = history.getRegistry().intern(idents.get(i));
+            }
+            for(Map.Entry<Integer, BitSet> entry : accumulator.getAuthors().entrySet()) {
+                BitSet authors = new BitSet();
+                for(int local = entry.getValue().nextSetBit(0); local >= 0; local = entry.getValue().nextSetBit(local + 1)) {
+                    authors.set(authorIds[local]);
+                }
+                String className = this.classPaths.get(entry.getKey());
+                history.addAll(className, authors);
+                total += history.count(className);
+            }
+        }
+        return total;
+    }
+}
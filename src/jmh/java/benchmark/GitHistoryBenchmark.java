@@ -0,0 +1,70 @@
+package benchmark;
+
+import labeling.TicketCommitIndex;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.Ref;
+import org.openjdk.jmh.annotations.*;
+import utils.GitUtils;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Operazioni sulla storia git usate da feature e labeling, eseguite su un {@link SyntheticRepository}.
+ * I diff dei commit restano nella DiffCache in memoria dopo il warmup, quindi per getDiffClasses e per la
+ * costruzione dell'indice dei ticket viene misurata soprattutto la visita della storia e il matching dei messaggi.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Ddataset.diffCache=false", "-Ddataset.blobCache=false"})
+@State(Scope.Benchmark)
+public class GitHistoryBenchmark {
+    @Param({"1000"})
+    public int commits;
+
+    @Param({"300"})
+    public int files;
+
+    @Param({"20"})
+    public int tags;
+
+    @Param({"10"})
+    public int churn;
+
+    private SyntheticRepository repository;
+    private Git git;
+    private int ticket;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, GitAPIException {
+        Logger.getLogger("").setLevel(java.util.logging.Level.WARNING);
+        this.repository = SyntheticRepository.create(this.commits, this.files, this.tags, this.churn, 42);
+        this.git = this.repository.getGit();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        this.repository.close();
+    }
+
+    @Benchmark
+    public List<Ref> tagOrderedByDate() throws GitAPIException, IOException {
+        return GitUtils.getTagOrderedByDate(this.git);
+    }
+
+    @Benchmark
+    public List<String> diffClasses() throws GitAPIException, IOException {
+        this.ticket = this.ticket % (this.commits / 2) + 1;
+        return GitUtils.getDiffClasses(this.git, SyntheticRepository.PROJECT_KEY + "-" + this.ticket);
+    }
+
+    @Benchmark
+    public TicketCommitIndex ticketCommitIndex() throws GitAPIException, IOException {
+        return TicketCommitIndex.build(this.git, SyntheticRepository.PROJECT_KEY);
+    }
+}
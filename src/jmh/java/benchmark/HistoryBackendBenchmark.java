@@ -0,0 +1,122 @@
+package benchmark;
+
+import mydatatype.EditSummary;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.StoredConfig;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.openjdk.jmh.annotations.*;
+import utils.DiffCache;
+import utils.GitCliHistoryBackend;
+import utils.HistoryBackend;
+import utils.JGitHistoryBackend;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Confronto dei backend dei diff su un {@link SyntheticRepository}: riassunti di tutta la storia calcolati solo con JGit
+ * oppure con i file modificati letti da un solo git log. Prima delle misure il setup verifica che i riassunti dei due backend
+ * coincidano commit per commit; la verifica completa è in GitCliHistoryBackendTest.
+ * Ogni invocazione usa una DiffCache nuova, così che entrambi i backend calcolino tutti i diff. Richiede git nel PATH.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Ddataset.diffCache=false", "-Ddataset.blobCache=false"})
+@State(Scope.Benchmark)
+public class HistoryBackendBenchmark {
+    @Param({"1000"})
+    public int commits;
+
+    @Param({"300"})
+    public int files;
+
+    @Param({"20"})
+    public int tags;
+
+    @Param({"10"})
+    public int churn;
+
+    @Param({"histogram", "myers"})
+    public String algorithm;
+
+    private SyntheticRepository synthetic;
+    private Repository repository;
+    private List<RevCommit> history;
+    private List<ObjectId> tips;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, GitAPIException {
+        Logger.getLogger("").setLevel(java.util.logging.Level.WARNING);
+        this.synthetic = SyntheticRepository.create(this.commits, this.files, this.tags, this.churn, 42);
+        this.repository = this.synthetic.getGit().getRepository();
+        StoredConfig config = this.repository.getConfig();
+        config.setString(ConfigConstants.CONFIG_DIFF_SECTION, null, ConfigConstants.CONFIG_KEY_ALGORITHM, this.algorithm);
+        config.save();
+
+        ObjectId head = this.repository.resolve(Constants.HEAD);
+        this.tips = Collections.singletonList(head);
+        this.history = new ArrayList<>();
+        try(RevWalk walk = new RevWalk(this.repository)) {
+            walk.markStart(walk.parseCommit(head));
+            for(RevCommit commit : walk) {
+                if(commit.getParentCount() > 0) this.history.add(commit);
+            }
+        }
+
+        List<List<EditSummary>> git = this.gitLog();
+        List<List<EditSummary>> jgit = this.jgit();
+        for(int i = 0; i < this.history.size(); i++) {
+            if(!git.get(i).toString().equals(jgit.get(i).toString())) {
+                throw new IllegalStateException("Commit " + this.history.get(i).name() + " has different summaries with git and JGit");
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        this.synthetic.close();
+    }
+
+    @Benchmark
+    public List<List<EditSummary>> jgit() throws IOException {
+        DiffCache.acquire(this.repository);
+        try(ObjectReader reader = this.repository.newObjectReader();
+            HistoryBackend backend = new JGitHistoryBackend(this.repository, () -> reader)) {
+            return this.readHistory(backend);
+        } finally {
+            DiffCache.release(this.repository);
+        }
+    }
+
+    @Benchmark
+    public List<List<EditSummary>> gitLog() throws IOException {
+        DiffCache.acquire(this.repository);
+        try(ObjectReader reader = this.repository.newObjectReader();
+            HistoryBackend backend = new GitCliHistoryBackend(this.repository, "git", new JGitHistoryBackend(this.repository, () -> reader))) {
+            return this.readHistory(backend);
+        } finally {
+            DiffCache.release(this.repository);
+        }
+    }
+
+    private List<List<EditSummary>> readHistory(HistoryBackend backend) throws IOException {
+        backend.prefetch(this.tips);
+        List<List<EditSummary>> summaries = new ArrayList<>(this.history.size());
+        for(RevCommit commit : this.history) {
+            summaries.add(backend.getEditSummaries(commit));
+        }
+        return summaries;
+    }
+}
@@ -0,0 +1,68 @@
+package benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import utils.SourceCodeLineCounter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conteggio del LOC di un file java sintetico con commenti, stringhe e text block, sia sui byte del blob
+ * (come fa il calcolo di SIZE) sia tramite BufferedReader.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LineCounterBenchmark {
+    private static final String[] LINES = {
+            "    private int counter = 0;",
+            "    // line comment",
+            "    /* block comment */ int x = 1;",
+            "    /*",
+            "     * multi line comment",
+            "     */",
+            "    String s = \"// not a comment\";",
+            "    char c = '\\'';",
+            "    String block = \"\"\"",
+            "        text block content",
+            "        \"\"\";",
+            "",
+            "    public void run() { counter++; }",
+    };
+
+    @Param({"200", "5000"})
+    public int lines;
+
+    private byte[] source;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder("public class Synthetic {\n");
+        for(int i = 0; i < this.lines; i++) {
+            builder.append(LINES[random.nextInt(LINES.length)]).append('\n');
+        }
+        builder.append("}\n");
+        this.source = builder.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public int countBytes() {
+        return SourceCodeLineCounter.getNumberOfLines(this.source);
+    }
+
+    @Benchmark
+    public int countReader() throws IOException {
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(this.source), StandardCharsets.UTF_8))) {
+            return SourceCodeLineCounter.getNumberOfLines(reader);
+        }
+    }
+}
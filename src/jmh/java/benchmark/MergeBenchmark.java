@@ -0,0 +1,51 @@
+package benchmark;
+
+import labeling.Main;
+import mydatatype.CompositeKey;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Unione delle righe del dataset con le classi buggy prodotte dal labeling.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MergeBenchmark {
+    @Param({"10", "20"})
+    public int releases;
+
+    @Param({"500"})
+    public int classes;
+
+    @Param({"2000"})
+    public int buggy;
+
+    private List<CompositeKey> allClasses;
+    private Map<CompositeKey, Integer> buggyClasses;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        this.allClasses = new ArrayList<>();
+        for(int release = 1; release <= this.releases; release++) {
+            for(int c = 0; c < this.classes; c++) {
+                this.allClasses.add(new CompositeKey(release, "Class" + c + ".java"));
+            }
+        }
+        this.buggyClasses = new LinkedHashMap<>();
+        for(int i = 0; i < this.buggy; i++) {
+            this.buggyClasses.merge(new CompositeKey(1 + random.nextInt(this.releases), "Class" + random.nextInt(this.classes) + ".java"), 1, Integer::sum);
+        }
+    }
+
+    @Benchmark
+    public Map<CompositeKey, Integer> merge() {
+        return Main.merge(this.allClasses, this.buggyClasses);
+    }
+}
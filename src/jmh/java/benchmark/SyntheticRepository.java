@@ -0,0 +1,160 @@
+package benchmark;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.*;
+import org.eclipse.jgit.util.FileUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+/**
+ * Repository git sintetico generato localmente con JGit, usato dai benchmark al posto dei repository di ZooKeeper e BookKeeper.
+ * Gli oggetti vengono scritti direttamente con un ObjectInserter, senza passare dalla working tree.
+ * Ogni commit modifica "churn" righe distribuite su file java casuali, cita nel messaggio un ticket SYNTH-n
+ * e i tag release-1.k.0 sono distribuiti uniformemente sulla storia.
+ */
+public class SyntheticRepository implements AutoCloseable {
+    public static final String PROJECT_KEY = "SYNTH";
+    private static final String[] AUTHORS = {"Alice", "Bob", "Carol", "Dave", "Eve", "Frank", "Grace", "Heidi"};
+    private static final String[] LINES = {
+            "    int value = 0;",
+            "    /* block comment */",
+            "    // line comment",
+            "    String text = \"/* not a comment */\";",
+            "    public void run() {",
+            "    }",
+            "    /**",
+            "     * javadoc",
+            "     */",
+            "    char quote = '\"';",
+            "",
+    };
+
+    private final File directory;
+    private final Git git;
+    private final int commits;
+
+    private SyntheticRepository(File directory, Git git, int commits) {
+        this.directory = directory;
+        this.git = git;
+        this.commits = commits;
+    }
+
+    /**
+     * Genera un nuovo repository in una cartella temporanea
+     * @param commits numero di commit
+     * @param files numero di file (circa un quinto sono test, scartati da isPathValid)
+     * @param tags numero di tag di release
+     * @param churn numero di righe modificate da ogni commit
+     * @param seed seme del generatore casuale, a parità di parametri genera la stessa storia
+     */
+    public static SyntheticRepository create(int commits, int files, int tags, int churn, long seed) throws IOException, GitAPIException {
+        File directory = Files.createTempDirectory("synthetic-repo").toFile();
+        Git git = Git.init().setDirectory(directory).call();
+        Random random = new Random(seed);
+        Repository repository = git.getRepository();
+
+        List<String> paths = new ArrayList<>();
+        for(int i = 0; i < files; i++) {
+            boolean test = i % 5 == 4;
+            paths.add((test ? "src/test/java/pkg" : "src/main/java/pkg") + (i % 13) + "/Class" + i + (test ? "Test" : "") + ".java");
+        }
+        Map<String, List<String>> contents = new HashMap<>();
+        Map<String, ObjectId> blobs = new TreeMap<>();
+        int commitsPerTag = Math.max(1, commits / Math.max(1, tags));
+        long time = 1_500_000_000_000L;
+        ObjectId parent = null;
+        int tagCounter = 0;
+
+        try(ObjectInserter inserter = repository.newObjectInserter()) {
+            for(int c = 0; c < commits; c++) {
+                /* Modifico churn righe in file casuali, il primo commit crea tutti i file */
+                Set<String> changed = new HashSet<>();
+                if(c == 0) {
+                    for(String path : paths) {
+                        List<String> lines = new ArrayList<>();
+                        lines.add("public class C {");
+                        for(int l = 0; l < 20; l++) lines.add(LINES[random.nextInt(LINES.length)]);
+                        lines.add("}");
+                        contents.put(path, lines);
+                        changed.add(path);
+                    }
+                }
+                for(int e = 0; e < churn; e++) {
+                    String path = paths.get(random.nextInt(paths.size()));
+                    List<String> lines = contents.get(path);
+                    int line = 1 + random.nextInt(Math.max(1, lines.size() - 1));
+                    int operation = random.nextInt(3);
+                    if(operation == 0 || lines.size() < 5) {
+                        lines.add(line, LINES[random.nextInt(LINES.length)]);
+                    } else if(operation == 1) {
+                        lines.remove(line);
+                    } else {
+                        lines.set(line, LINES[random.nextInt(LINES.length)] + " " + c);
+                    }
+                    changed.add(path);
+                }
+                for(String path : changed) {
+                    byte[] bytes = String.join("\n", contents.get(path)).getBytes(StandardCharsets.UTF_8);
+                    blobs.put(path, inserter.insert(Constants.OBJ_BLOB, bytes));
+                }
+
+                DirCache dirCache = DirCache.newInCore();
+                DirCacheBuilder builder = dirCache.builder();
+                for(Map.Entry<String, ObjectId> blob : blobs.entrySet()) {
+                    DirCacheEntry entry = new DirCacheEntry(blob.getKey());
+                    entry.setFileMode(FileMode.REGULAR_FILE);
+                    entry.setObjectId(blob.getValue());
+                    builder.add(entry);
+                }
+                builder.finish();
+
+                String author = AUTHORS[random.nextInt(AUTHORS.length)];
+                PersonIdent ident = new PersonIdent(author, author.toLowerCase() + "@example.org", new Date(time), TimeZone.getTimeZone("UTC"));
+                time += 3_600_000L;
+                CommitBuilder commit = new CommitBuilder();
+                commit.setTreeId(dirCache.writeTree(inserter));
+                if(parent != null) commit.setParentId(parent);
+                commit.setAuthor(ident);
+                commit.setCommitter(ident);
+                commit.setMessage(PROJECT_KEY + "-" + (1 + random.nextInt(Math.max(1, commits / 2))) + ": synthetic change " + c + "\n");
+                parent = inserter.insert(commit);
+
+                if((c + 1) % commitsPerTag == 0 && tagCounter < tags) {
+                    tagCounter++;
+                    SyntheticRepository.updateRef(repository, Constants.R_TAGS + "release-1." + tagCounter + ".0", parent);
+                }
+            }
+            inserter.flush();
+        }
+        SyntheticRepository.updateRef(repository, Constants.HEAD, parent);
+        return new SyntheticRepository(directory, git, commits);
+    }
+
+    private static void updateRef(Repository repository, String name, ObjectId id) throws IOException {
+        RefUpdate refUpdate = repository.updateRef(name);
+        refUpdate.setNewObjectId(id);
+        refUpdate.forceUpdate();
+    }
+
+    public Git getGit() {
+        return git;
+    }
+
+    public int getCommits() {
+        return commits;
+    }
+
+    @Override
+    public void close() throws IOException {
+        git.close();
+        FileUtils.delete(directory, FileUtils.RECURSIVE | FileUtils.RETRY);
+    }
+}
@@ -0,0 +1,119 @@
+package features;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Autori cumulativi di ogni classe, indicizzati per path completo, come BitSet degli id dell'{@link AuthorRegistry}.
+ * Viene aggiornata release dopo release nell'ordine della timeline e salvata nello stato della modalità incrementale,
+ * in modo che NAUTH cumulativo riparta dagli autori delle release già elaborate.
+ */
+public class AuthorHistory {
+    private final AuthorRegistry registry;
+    private final Map<String, BitSet> authorsByClass;
+
+    public AuthorHistory() {
+        this(new AuthorRegistry(), new LinkedHashMap<>());
+    }
+
+    private AuthorHistory(AuthorRegistry registry, Map<String, BitSet> authorsByClass) {
+        this.registry = registry;
+        this.authorsByClass = authorsByClass;
+    }
+
+    public AuthorRegistry getRegistry() {
+        return registry;
+    }
+
+    /**
+     * Aggiunge gli autori di una release a quelli della classe
+     */
+    public void addAll(String className, BitSet authors) {
+        this.authorsByClass.computeIfAbsent(className, key -> new BitSet()).or(authors);
+    }
+
+    /**
+     * Gli autori di una classe rinominata seguono il nuovo path, unendosi a quelli eventualmente già presenti
+     */
+    public void rename(String oldClassName, String newClassName) {
+        BitSet moved = this.authorsByClass.remove(oldClassName);
+        if(moved != null) {
+            this.addAll(newClassName, moved);
+        }
+    }
+
+    public boolean contains(String className) {
+        return this.authorsByClass.containsKey(className);
+    }
+
+    /**
+     * @return Ritorna il numero di autori distinti della classe, 0 se la classe non è mai stata toccata
+     */
+    public int count(String className) {
+        BitSet authors = this.authorsByClass.get(className);
+        return authors != null ? authors.cardinality() : 0;
+    }
+
+    /**
+     * @return Ritorna lo stato in json: le persone del registro con i loro alias e gli id degli autori di ogni classe
+     */
+    public JSONObject toJson() {
+        List<JSONObject> people = new ArrayList<>();
+        for(int id = 0; id < this.registry.size(); id++) {
+            JSONObject person = new JSONObject();
+            person.put("name", this.registry.getName(id));
+            person.put("emails", new JSONArray());
+            person.put("names", new JSONArray());
+            people.add(person);
+        }
+        for(Map.Entry<String, Integer> email : this.registry.getEmails().entrySet()) {
+            people.get(email.getValue()).getJSONArray("emails").put(email.getKey());
+        }
+        for(Map.Entry<String, Integer> name : this.registry.getNames().entrySet()) {
+            people.get(name.getValue()).getJSONArray("names").put(name.getKey());
+        }
+        JSONObject classes = new JSONObject();
+        for(Map.Entry<String, BitSet> entry : this.authorsByClass.entrySet()) {
+            classes.put(entry.getKey(), new JSONArray(entry.getValue().stream().toArray()));
+        }
+        JSONObject json = new JSONObject();
+        json.put("people", new JSONArray(people));
+        json.put("classes", classes);
+        return json;
+    }
+
+    public static AuthorHistory fromJson(JSONObject json) {
+        AuthorRegistry registry = new AuthorRegistry();
+        JSONArray people = json.getJSONArray("people");
+        for(int id = 0; id < people.length(); id++) {
+            JSONObject person = people.getJSONObject(id);
+            registry.restore(id, person.optString("name", null), AuthorHistory.toStrings(person.getJSONArray("emails")),
+                    AuthorHistory.toStrings(person.getJSONArray("names")));
+        }
+        Map<String, BitSet> authorsByClass = new LinkedHashMap<>();
+        JSONObject classes = json.getJSONObject("classes");
+        for(String className : classes.keySet()) {
+            JSONArray ids = classes.getJSONArray(className);
+            BitSet authors = new BitSet();
+            for(int i = 0; i < ids.length(); i++) {
+                authors.set(ids.getInt(i));
+            }
+            authorsByClass.put(className, authors);
+        }
+        return new AuthorHistory(registry, authorsByClass);
+    }
+
+    private static List<String> toStrings(JSONArray array) {
+        List<String> values = new ArrayList<>(array.length());
+        for(int i = 0; i < array.length(); i++) {
+            values.add(array.getString(i));
+        }
+        return values;
+    }
+}
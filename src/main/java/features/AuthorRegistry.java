@@ -0,0 +1,91 @@
+package features;
+
+import org.eclipse.jgit.lib.PersonIdent;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Registro degli autori di un progetto: ogni identità git viene internata in un id intero denso, così che gli autori
+ * di una classe possano essere tenuti in un BitSet.
+ * Due identità sono la stessa persona se hanno la stessa email oppure lo stesso nome, ignorando maiuscole e spazi:
+ * un autore che ha cambiato nome mantenendo l'email, o email mantenendo il nome, viene contato una sola volta.
+ * L'email viene cercata prima del nome; se email e nome portano a due persone già diverse vince l'email e le persone non vengono unite,
+ * in modo che gli id già assegnati restino validi. Il registro non è thread safe: va usato nell'ordine della timeline da un solo thread,
+ * così l'assegnazione degli id non dipende dall'ordine in cui le release vengono calcolate.
+ */
+public class AuthorRegistry {
+    private final Map<String, Integer> byEmail = new HashMap<>();
+    private final Map<String, Integer> byName = new HashMap<>();
+    private final List<String> names = new ArrayList<>();
+
+    public int intern(PersonIdent ident) {
+        return this.intern(ident.getName(), ident.getEmailAddress());
+    }
+
+    /**
+     * @return Ritorna l'id della persona con questo nome o email, registrandola se non è mai stata vista
+     */
+    public int intern(String name, String email) {
+        String emailKey = AuthorRegistry.normalize(email);
+        String nameKey = AuthorRegistry.normalize(name);
+        Integer id = emailKey != null ? this.byEmail.get(emailKey) : null;
+        if(id == null && nameKey != null) {
+            id = this.byName.get(nameKey);
+        }
+        if(id == null) {
+            id = this.names.size();
+            this.names.add(name != null ? name : email);
+        }
+        if(emailKey != null) this.byEmail.putIfAbsent(emailKey, id);
+        if(nameKey != null) this.byName.putIfAbsent(nameKey, id);
+        return id;
+    }
+
+    /**
+     * @return Ritorna il primo nome con cui è stata vista la persona
+     */
+    public String getName(int id) {
+        return this.names.get(id);
+    }
+
+    /**
+     * @return Ritorna il numero di persone distinte registrate
+     */
+    public int size() {
+        return this.names.size();
+    }
+
+    Map<String, Integer> getEmails() {
+        return this.byEmail;
+    }
+
+    Map<String, Integer> getNames() {
+        return this.byName;
+    }
+
+    /**
+     * Ripristina una persona salvata, con il nome e gli alias già normalizzati
+     */
+    void restore(int id, String name, List<String> emailKeys, List<String> nameKeys) {
+        while(this.names.size() <= id) {
+            this.names.add(null);
+        }
+        this.names.set(id, name);
+        for(String emailKey : emailKeys) {
+            this.byEmail.put(emailKey, id);
+        }
+        for(String nameKey : nameKeys) {
+            this.byName.put(nameKey, id);
+        }
+    }
+
+    private static String normalize(String value) {
+        if(value == null) return null;
+        String key = value.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+        return key.isEmpty() ? null : key;
+    }
+}
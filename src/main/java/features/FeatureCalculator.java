@@ -1,25 +1,43 @@
 package features;
 
+import labeling.ProjectContext;
+import logging.Metrics;
+import labeling.ReleaseCommitIndex;
 import labeling.ReleaseKeeper;
 import labeling.Tag;
 import mydatatype.CompositeKey;
+import mydatatype.EditSummary;
+import mydatatype.StringPool;
 import myexception.OutOfCaseException;
-import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
-import org.eclipse.jgit.diff.DiffEntry;
-import org.eclipse.jgit.diff.DiffFormatter;
 import org.eclipse.jgit.lib.ObjectId;
-import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.PersonIdent;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.treewalk.TreeWalk;
-import utils.GitUtils;
-import utils.SourceCodeLineCounter;
+import org.eclipse.jgit.revwalk.RevWalk;
+import utils.BlobLineCountCache;
+import utils.DiffCache;
+import utils.HistoryBackend;
+import utils.RepositoryAccess;
+import utils.Settings;
 
-import java.io.*;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -28,125 +46,343 @@ public class FeatureCalculator {
 
     private FeatureCalculator() {}
 
-    public static Map<CompositeKey, Integer> computeFeature(Git git, final Feature feature) throws GitAPIException, IOException, OutOfCaseException {
-        if(feature.equals(Feature.SIZE)) {
-            return FeatureCalculator.calculateSize(git);
+    public static Map<CompositeKey, Integer> computeFeature(ProjectContext context, final Feature feature) throws GitAPIException, IOException, OutOfCaseException {
+        return FeatureCalculator.computeFeatures(context, EnumSet.of(feature)).get(feature);
+    }
+
+    /**
+     * Calcola in un'unica passata tutte le feature richieste: per ogni release il range di commit viene percorso una sola volta,
+     * il diff di ogni commit con il padre viene letto dall'{@link HistoryBackend} del progetto (tramite la {@link DiffCache})
+     * e lo stesso riassunto delle modifiche alimenta tutte le feature richieste.
+     * Se {@link Settings#getParallelism()} è maggiore di 1 le release vengono calcolate in parallelo su un ForkJoinPool dedicato.
+     * @param context progetto di cui calcolare le feature
+     * @param features insieme delle feature da calcolare
+     * @return Ritorna una mappa che associa ad ogni feature richiesta la sua colonna (release, className) -> valore
+     * @throws GitAPIException
+     * @throws IOException
+     * @throws OutOfCaseException
+     */
+    public static Map<Feature, Map<CompositeKey, Integer>> computeFeatures(ProjectContext context, final Set<Feature> features) throws GitAPIException, IOException, OutOfCaseException {
+        return FeatureCalculator.computeFeatures(context, features, 1, new AuthorHistory());
+    }
+
+    /**
+     * Come {@link #computeFeatures(ProjectContext, Set)}, ma calcola solo le release con id maggiore o uguale a firstReleaseId.
+     * Usato dalla modalità incrementale per calcolare solo le release nuove rispetto all'esecuzione precedente.
+     * @param firstReleaseId id della prima release da calcolare
+     * @param authorHistory autori cumulativi delle release precedenti a firstReleaseId, viene aggiornata con gli autori delle release calcolate
+     */
+    public static Map<Feature, Map<CompositeKey, Integer>> computeFeatures(ProjectContext context, final Set<Feature> features, int firstReleaseId, AuthorHistory authorHistory) throws GitAPIException, IOException, OutOfCaseException {
+        Map<Feature, Map<CompositeKey, Integer>> columns = FeatureCalculator.newColumns(features);
+        FeatureCalculator.computeFeatures(context, features, firstReleaseId, authorHistory, FeatureCalculator.collectInto(columns));
+        return columns;
+    }
+
+    /**
+     * Come {@link #computeFeatures(ProjectContext, Set, int, AuthorHistory)}, ma invece di accumulare le colonne di tutta la storia
+     * passa le feature di ogni release al consumer appena sono definitive, nell'ordine della timeline.
+     * @param consumer riceve le colonne di una release alla volta
+     */
+    public static void computeFeatures(ProjectContext context, final Set<Feature> features, int firstReleaseId, AuthorHistory authorHistory, ReleaseConsumer consumer) throws GitAPIException, IOException, OutOfCaseException {
+        int parallelism = Settings.getParallelism();
+        if(parallelism <= 1) {
+            FeatureCalculator.computeFeatures(context, features, null, firstReleaseId, authorHistory, consumer);
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            FeatureCalculator.computeFeatures(context, features, pool, firstReleaseId, authorHistory, consumer);
+        } finally {
+            pool.shutdown();
         }
-        LOGGER.log(Level.INFO, () -> "Computing" + feature);
-        Map<CompositeKey, Integer> column = new LinkedHashMap<>();
-        Map<String, List<String>> authorsMap = new LinkedHashMap<>();
-        DiffFormatter diffFormatter = GitUtils.getDiffFormatter(git);
-
-        for(Tag release: ReleaseKeeper.getInstance().getReleaseKeySet()) {
-            Map<String, Integer> featureOverRelease = new HashMap<>();
-            Map<String, List<Integer>> avgLocAdded = new HashMap<>();
-            Iterable<RevCommit> commits = FeatureCalculatorUtils.getAllCommitsOfARelease(git, ReleaseKeeper.getInstance().getIdFromTag(release));
-            if(commits == null) break;
-            List<String> classList = FeatureCalculatorUtils.getAllFileOfTheRelease(git, ReleaseKeeper.getInstance().getIdFromTag(release));
-
-            for(RevCommit commit: commits) {
-                if(commit.getParentCount() == 0) continue;
-                RevCommit prevCommit = commit.getParent(0);
-                List<DiffEntry> diffs = diffFormatter.scan(prevCommit, commit);
-
-                switch (feature) {
-                    case LOC_TOUCHED:
-                        FeatureCalculatorUtils.calculateLocTouchedUtils(featureOverRelease, diffs, diffFormatter);
-                        break;
-                    case NR:
-                        FeatureCalculatorUtils.calculateNumberOfRevisionsUtils(featureOverRelease, diffs);
-                        break;
-                    case NAUTH:
-                        String author = commit.getAuthorIdent().getName();
-                        FeatureCalculatorUtils.calculateNumberOfAuthorsUtils(authorsMap, diffs, author);
-                        break;
-                    case LOC_ADDED:
-                        FeatureCalculatorUtils.calculateLocAddedUtils(featureOverRelease, diffs, diffFormatter);
-                        break;
-                    case MAX_LOC_ADDED:
-                        FeatureCalculatorUtils.calculateMaxLocAddedUtils(featureOverRelease, diffs, diffFormatter);
-                        break;
-                    case AVG_LOC_ADDED:
-                        FeatureCalculatorUtils.calculateAverageLocAddedUtils(avgLocAdded, diffs, diffFormatter);
-                        break;
-                    case CHURN:
-                        FeatureCalculatorUtils.calculateChurnUtils(featureOverRelease, diffs, diffFormatter);
-                        break;
-                    case MAX_CHURN:
-                        FeatureCalculatorUtils.calculateMaxChurnUtils(featureOverRelease, diffs, diffFormatter);
-                        break;
-                    default:
-                        throw new OutOfCaseException("Switch out of case");
+    }
+
+    /**
+     * Come {@link #computeFeatures(ProjectContext, Set)}, ma le release vengono calcolate sul pool passato in input.
+     * Ogni release usa l'ObjectReader del proprio thread e un proprio RevWalk; i risultati parziali vengono poi uniti
+     * nell'ordine della timeline, quindi l'output non dipende dall'ordine di completamento dei task.
+     * @param context progetto di cui calcolare le feature
+     * @param features insieme delle feature da calcolare
+     * @param pool pool su cui eseguire le release, se null le release vengono calcolate sequenzialmente
+     * @return Ritorna una mappa che associa ad ogni feature richiesta la sua colonna (release, className) -> valore
+     * @throws GitAPIException
+     * @throws IOException
+     * @throws OutOfCaseException
+     */
+    public static Map<Feature, Map<CompositeKey, Integer>> computeFeatures(ProjectContext context, final Set<Feature> features, ForkJoinPool pool) throws GitAPIException, IOException, OutOfCaseException {
+        Map<Feature, Map<CompositeKey, Integer>> columns = FeatureCalculator.newColumns(features);
+        FeatureCalculator.computeFeatures(context, features, pool, 1, new AuthorHistory(), FeatureCalculator.collectInto(columns));
+        return columns;
+    }
+
+    /**
+     * Calcola le release a partire da firstReleaseId e le passa al consumer in ordine.
+     * Sul pool vengono tenute in volo al massimo due release per thread, così che i risultati in attesa di essere consumati
+     * restino limitati indipendentemente dalla lunghezza della storia.
+     */
+    private static void computeFeatures(ProjectContext context, final Set<Feature> features, ForkJoinPool pool, int firstReleaseId, AuthorHistory authorHistory, ReleaseConsumer consumer) throws GitAPIException, IOException, OutOfCaseException {
+        LOGGER.log(Level.INFO, () -> "Computing " + features);
+        RepositoryAccess access = context.getRepositoryAccess();
+        ReleaseKeeper releaseKeeper = context.getReleaseKeeper();
+        List<Tag> releases = new ArrayList<>();
+        for(Tag release : releaseKeeper.getReleaseKeySet()) {
+            if(releaseKeeper.getIdFromTag(release) >= firstReleaseId) {
+                releases.add(release);
+            }
+        }
+        Metrics metrics = context.getMetrics();
+        boolean cumulativeAuthors = Settings.isNauthCumulative();
+        ReleaseCommitIndex commitIndex = context.getCommitIndex();
+        HistoryBackend history = context.getHistoryBackend();
+        StringPool classPaths = new StringPool();
+        Deque<Future<ReleaseFeatures>> tasks = new ArrayDeque<>();
+        int window = pool != null ? 2 * pool.getParallelism() : 0;
+        int submitted = 0;
+
+        Metrics.Stage stage = metrics.stage("features");
+        try(ReleaseSnapshotTracker tracker = new ReleaseSnapshotTracker(access.getReader())) {
+            for(int i = 0; i < releases.size(); i++) {
+                ReleaseFeatures releaseFeatures;
+                if(pool != null) {
+                    while(submitted < releases.size() && submitted < i + window) {
+                        Tag release = releases.get(submitted++);
+                        ReleaseSnapshot snapshot = FeatureCalculator.nextSnapshot(tracker, commitIndex, releaseKeeper.getIdFromTag(release), metrics);
+                        tasks.add(pool.submit(() -> FeatureCalculator.computeRelease(access, history, commitIndex, releaseKeeper, release, snapshot, features, classPaths, metrics)));
+                    }
+                    releaseFeatures = FeatureCalculator.getResult(tasks.poll());
+                } else {
+                    ReleaseSnapshot snapshot = FeatureCalculator.nextSnapshot(tracker, commitIndex, releaseKeeper.getIdFromTag(releases.get(i)), metrics);
+                    releaseFeatures = FeatureCalculator.computeRelease(access, history, commitIndex, releaseKeeper, releases.get(i), snapshot, features, classPaths, metrics);
                 }
+                if(releaseFeatures == null) break;
+                if(features.contains(Feature.NAUTH)) {
+                    FeatureCalculator.mergeAuthors(releaseFeatures, authorHistory, cumulativeAuthors);
+                }
+                consumer.accept(releaseFeatures.getRelease(), releaseFeatures.getTable());
+            }
+            metrics.add("trees.walked", tracker.getFullWalks());
+            metrics.add("trees.diffed", tracker.getTreeDiffs());
+        } finally {
+            for(Future<ReleaseFeatures> task : tasks) {
+                task.cancel(false);
+            }
+            stage.stop();
+        }
+    }
 
+    /**
+     * Traduce gli autori della release negli id dell'{@link AuthorRegistry}, nell'ordine della timeline, e calcola NAUTH.
+     * Gli autori cumulativi dei file rinominati nella release seguono il nuovo path, poi vengono uniti gli autori della release.
+     * @param cumulative se true NAUTH conta gli autori di tutte le release fino a quella corrente, altrimenti solo quelli della release
+     */
+    private static void mergeAuthors(ReleaseFeatures releaseFeatures, AuthorHistory authorHistory, boolean cumulative) {
+        List<PersonIdent> idents = releaseFeatures.getAuthorIdents();
+        int[] authorIds = new int[idents.size()];
+        for(int i = 0; i < authorIds.length; i++) {
+            authorIds[i] = authorHistory.getRegistry().intern(idents.get(i));
+        }
+        for(Map.Entry<String, String> rename : releaseFeatures.getRenames()) {
+            authorHistory.rename(rename.getKey(), rename.getValue());
+        }
+        Map<String, BitSet> releaseAuthors = new HashMap<>();
+        for(Map.Entry<String, BitSet> entry : releaseFeatures.getAuthorsMap().entrySet()) {
+            BitSet authors = new BitSet();
+            for(int local = entry.getValue().nextSetBit(0); local >= 0; local = entry.getValue().nextSetBit(local + 1)) {
+                authors.set(authorIds[local]);
             }
-            switch (feature) {
-                case LOC_TOUCHED:
-                case NR:
-                case LOC_ADDED:
-                case MAX_LOC_ADDED:
-                case CHURN:
-                case MAX_CHURN:
-                    FeatureCalculatorUtils.addResultSetOfTheRelease(column, featureOverRelease, classList, ReleaseKeeper.getInstance().getIdFromTag(release));
-                    break;
-                case NAUTH:
-                    FeatureCalculatorUtils.addResultNAuth(column, classList, authorsMap, release);
-                    break;
-                case AVG_LOC_ADDED:
-                    FeatureCalculatorUtils.addResultAvgLocAdded(column, classList, avgLocAdded,release);
-                    break;
-                default:
-                    throw new OutOfCaseException("Switch out of case");
+            releaseAuthors.put(entry.getKey(), authors);
+            authorHistory.addAll(entry.getKey(), authors);
+        }
+        FeatureTable table = releaseFeatures.getTable();
+        for(int row = 0; row < table.size(); row++) {
+            String path = table.getPath(row);
+            if(cumulative) {
+                if(authorHistory.contains(path)) {
+                    table.set(Feature.NAUTH, row, authorHistory.count(path));
+                }
+            } else {
+                BitSet authors = releaseAuthors.get(path);
+                if(authors != null) {
+                    table.set(Feature.NAUTH, row, authors.cardinality());
+                }
             }
         }
+    }
 
-        return column;
+    private static Map<Feature, Map<CompositeKey, Integer>> newColumns(Set<Feature> features) {
+        Map<Feature, Map<CompositeKey, Integer>> columns = new EnumMap<>(Feature.class);
+        for(Feature feature : features) {
+            columns.put(feature, new LinkedHashMap<>());
+        }
+        return columns;
     }
 
     /**
-     * Dato in input il repository, la lista delle release e il nome del progetto calcola il LOC per ogni classe raggruppando per chiave (projectName, release, className)
-     * @param git
-     * @return Questo metodo ritorna una LinkedHashMap contenente la coppia (key, value) dove key è la tripla (projectName, release, className) e value è il LOC
-     * @throws IOException
-     * @throws GitAPIException
+     * @return Ritorna un consumer che accoda le colonne di ogni release a quelle di tutta la storia
      */
-    public static Map<CompositeKey, Integer> calculateSize(Git git) throws GitAPIException, IOException {
-        LOGGER.log(Level.INFO, "Computing sizes...");
-        Map<CompositeKey, Integer> feature = new LinkedHashMap<>();
-        /* Per ogni release prendo l'ultimo commit relativo a quella release.
-        *  Poi eseguo una ricerca sull'albero cercando i file java
-        *  Se li trovo calcolo il LOC di quel file e li aggiungo alla Mappa*/
-        for(Tag release : ReleaseKeeper.getInstance().getReleaseKeySet()) {
-            Iterable<RevCommit> commits = FeatureCalculatorUtils.getAllCommitsOfARelease(git, ReleaseKeeper.getInstance().getIdFromTag(release));
-            if(commits == null) break;
-            RevCommit lastCommit = null;
-            for(RevCommit commit : commits) {
-                lastCommit = commit;
+    private static ReleaseConsumer collectInto(Map<Feature, Map<CompositeKey, Integer>> columns) {
+        return (release, table) -> {
+            for(Map.Entry<Feature, Map<CompositeKey, Integer>> column : columns.entrySet()) {
+                column.getValue().putAll(table.toMap(column.getKey()));
             }
-            if (lastCommit != null) {
-                ObjectId treeId = lastCommit.getTree().getId();
-                try (TreeWalk treeWalk = new TreeWalk(git.getRepository())) {
-                    treeWalk.reset(treeId);
-                    treeWalk.setRecursive(true);
-                    while (treeWalk.next()) {
-                        String path = treeWalk.getPathString();
-                        if (FeatureCalculatorUtils.isPathValid(path)) {
-                            CompositeKey key = new CompositeKey(ReleaseKeeper.getInstance().getIdFromTag(release), path);
-                            ObjectId objectId = treeWalk.getObjectId(0);
-                            ObjectLoader loader = git.getRepository().open(objectId);
-                            ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-                            loader.copyTo(byteArrayOutputStream);
-                            InputStream inputStream = new ByteArrayInputStream(byteArrayOutputStream.toByteArray());
-                            BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream));
-                            int loc = SourceCodeLineCounter.getNumberOfLines(reader);
-                            feature.put(key, loc);
+        };
+    }
+
+    /**
+     * Calcola le feature di una singola release con l'ObjectReader del thread e un proprio RevWalk,
+     * in modo che release diverse possano essere calcolate in parallelo. I diff vengono letti dall'{@link HistoryBackend}. I commit della release vengono presi dal {@link ReleaseCommitIndex}.
+     * @param snapshot classi valide dell'albero della release, calcolate da {@link ReleaseSnapshotTracker}
+     * @param classPaths pool condiviso tra le release in cui vengono internati i path delle classi
+     * @param metrics metriche del progetto: tempo delle fasi features.tree e features.history, commit, diff e file letti
+     * @return Ritorna il risultato parziale della release, null se la release non ha una release successiva
+     */
+    private static ReleaseFeatures computeRelease(RepositoryAccess access, HistoryBackend history, ReleaseCommitIndex commitIndex, ReleaseKeeper releaseKeeper, Tag release, ReleaseSnapshot snapshot, Set<Feature> features, StringPool classPaths, Metrics metrics) throws GitAPIException, IOException, OutOfCaseException {
+        Repository repository = access.getRepository();
+        Integer releaseId = releaseKeeper.getIdFromTag(release);
+        Set<Feature> diffFeatures = EnumSet.noneOf(Feature.class);
+        diffFeatures.addAll(features);
+        diffFeatures.remove(Feature.SIZE);
+
+        /* Il reader è quello del thread e resta aperto, così le finestre dei pack lette restano disponibili per le release successive */
+        ObjectReader reader = access.getReader();
+        try(RevWalk revWalk = new RevWalk(reader)) {
+            List<RevCommit> commits = FeatureCalculatorUtils.getAllCommitsOfARelease(revWalk, commitIndex, releaseId);
+            if(commits == null) return null;
+
+            FeatureTable table = new FeatureTable(classPaths, features);
+            Metrics.Stage treeStage = metrics.stage("features.tree");
+            try {
+                FeatureCalculator.fillReleaseTable(repository, reader, snapshot, releaseId, table, metrics);
+            } finally {
+                treeStage.stop();
+            }
+            metrics.increment("releases");
+            metrics.add("files", table.size());
+
+            PathAccumulator accumulator = new PathAccumulator();
+            List<Map.Entry<String, String>> renames = new ArrayList<>();
+
+            /* Percorro i commit dal più vecchio, così che le modifiche fatte prima di una rinomina seguano il file nel nuovo path */
+            Metrics.Stage historyStage = metrics.stage("features.history");
+            try {
+                for(int i = commits.size() - 1; i >= 0 && !diffFeatures.isEmpty(); i--) {
+                    RevCommit commit = commits.get(i);
+                    if(commit.getParentCount() == 0) continue;
+                    PersonIdent author = commit.getAuthorIdent();
+
+                    List<EditSummary> summaries = history.getEditSummaries(commit);
+                    metrics.increment("commits");
+                    metrics.add("diffs", summaries.size());
+                    for(EditSummary entry : summaries) {
+                        /* La cache contiene solo le classi valide, con le EditList già riassunte */
+                        int pathId = classPaths.intern(entry.getPath());
+                        if(entry.isRename()) {
+                            accumulator.move(classPaths.intern(entry.getOldPath()), pathId);
+                            renames.add(Map.entry(entry.getOldPath(), entry.getPath()));
                         }
+                        accumulator.add(pathId, entry.getTouched(), entry.getAdded(), entry.getChurn(), author);
+                    }
+                }
+            } finally {
+                historyStage.stop();
+            }
+
+            /* Riporto i valori per classe sulle righe della release, una riga per ogni path valido dell'albero */
+            for(int row = 0; row < table.size(); row++) {
+                int pathId = table.getPathId(row);
+                if(!accumulator.isTouched(pathId)) continue;
+                for(Feature feature : diffFeatures) {
+                    switch (feature) {
+                        case LOC_TOUCHED:
+                        case NR:
+                        case LOC_ADDED:
+                        case MAX_LOC_ADDED:
+                        case AVG_LOC_ADDED:
+                        case CHURN:
+                        case MAX_CHURN:
+                            table.set(feature, row, accumulator.get(feature, pathId));
+                            break;
+                        case NAUTH:
+                            /* NAUTH viene calcolato durante l'unione delle release */
+                            break;
+                        default:
+                            throw new OutOfCaseException("Switch out of case");
                     }
                 }
             }
+
+            Map<String, BitSet> authorsMap = new LinkedHashMap<>();
+            for(Map.Entry<Integer, BitSet> entry : accumulator.getAuthors().entrySet()) {
+                authorsMap.put(classPaths.get(entry.getKey()), entry.getValue());
+            }
+            return new ReleaseFeatures(release, table, accumulator.getAuthorIdents(), authorsMap, renames);
+        }
+    }
+
+    /**
+     * Porta il tracker all'albero della release: come in passato viene usato l'ultimo commit del range della release.
+     * @return Ritorna lo snapshot della release, vuoto se il range non contiene commit
+     */
+    private static ReleaseSnapshot nextSnapshot(ReleaseSnapshotTracker tracker, ReleaseCommitIndex commitIndex, Integer releaseId, Metrics metrics) throws IOException {
+        List<ObjectId> commits = commitIndex.getCommits(releaseId);
+        if(commits == null || commits.isEmpty()) return ReleaseSnapshot.EMPTY;
+        Metrics.Stage snapshotStage = metrics.stage("features.snapshot");
+        try {
+            return tracker.advance(commits.get(commits.size() - 1));
+        } finally {
+            snapshotStage.stop();
+        }
+    }
+
+    /**
+     * Aggiunge alla tabella una riga per ogni classe java valida dello snapshot della release.
+     * Se la tabella contiene SIZE calcola anche il LOC di ogni classe con la {@link BlobLineCountCache},
+     * leggendo in blocco i blob che non sono in cache e contando hit e miss nelle metriche del progetto.
+     */
+    private static void fillReleaseTable(Repository repository, ObjectReader reader, ReleaseSnapshot snapshot, Integer releaseId, FeatureTable table, Metrics metrics) throws IOException {
+        for(String path : snapshot.getPaths()) {
+            table.addRow(releaseId, path);
+        }
+        if(!table.getFeatures().contains(Feature.SIZE)) return;
+        int[] locs = BlobLineCountCache.getInstance(repository).getNumberOfLines(reader, snapshot.getBlobIds(), metrics);
+        for(int row = 0; row < locs.length; row++) {
+            table.set(Feature.SIZE, row, locs[row]);
+        }
+    }
+
+    /**
+     * Attende il completamento del task e rilancia le eccezioni controllate sollevate durante il calcolo della release
+     */
+    private static <T> T getResult(Future<T> task) throws GitAPIException, IOException, OutOfCaseException {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while computing features");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof GitAPIException) throw (GitAPIException) cause;
+            if(cause instanceof IOException) throw (IOException) cause;
+            if(cause instanceof OutOfCaseException) throw (OutOfCaseException) cause;
+            if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IllegalStateException(cause);
         }
+    }
 
-        return feature;
+    /**
+     * Dato in input il repository, la lista delle release e il nome del progetto calcola il LOC per ogni classe raggruppando per chiave (projectName, release, className)
+     * @param context
+     * @return Questo metodo ritorna una LinkedHashMap contenente la coppia (key, value) dove key è la tripla (projectName, release, className) e value è il LOC
+     * @throws IOException
+     * @throws GitAPIException
+     */
+    public static Map<CompositeKey, Integer> calculateSize(ProjectContext context) throws GitAPIException, IOException {
+        LOGGER.log(Level.INFO, "Computing sizes...");
+        try {
+            return FeatureCalculator.computeFeatures(context, EnumSet.of(Feature.SIZE)).get(Feature.SIZE);
+        } catch (OutOfCaseException e) {
+            throw new IllegalStateException(e);
+        }
     }
 
 
@@ -0,0 +1,110 @@
+package features;
+
+import mydatatype.CompositeKey;
+import mydatatype.StringPool;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tabella colonnare delle feature: ogni riga è una coppia (release, classe) e ogni feature è una colonna int[]
+ * indicizzata per riga, condivisa dallo stesso indice di righe. Release e path sono tenuti come id interi, i path
+ * vengono risolti tramite lo {@link StringPool} passato al costruttore.
+ * Per ogni colonna un BitSet indica le righe con un valore, come le chiavi presenti nelle vecchie mappe (release, className) -> valore.
+ */
+public class FeatureTable {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final StringPool paths;
+    private final Set<Feature> features;
+    private final int[][] values;
+    private final BitSet[] present;
+    private int[] releaseIds;
+    private int[] pathIds;
+    private int size;
+
+    public FeatureTable(StringPool paths, Set<Feature> features) {
+        this.paths = paths;
+        this.features = features;
+        this.values = new int[Feature.values().length][];
+        this.present = new BitSet[Feature.values().length];
+        for(Feature feature : features) {
+            this.values[feature.ordinal()] = new int[INITIAL_CAPACITY];
+            this.present[feature.ordinal()] = new BitSet();
+        }
+        this.releaseIds = new int[INITIAL_CAPACITY];
+        this.pathIds = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * Aggiunge una riga senza valori
+     * @return Ritorna l'indice della nuova riga
+     */
+    public int addRow(int releaseId, String path) {
+        if(this.size == this.releaseIds.length) {
+            int capacity = this.size * 2;
+            this.releaseIds = Arrays.copyOf(this.releaseIds, capacity);
+            this.pathIds = Arrays.copyOf(this.pathIds, capacity);
+            for(Feature feature : this.features) {
+                this.values[feature.ordinal()] = Arrays.copyOf(this.values[feature.ordinal()], capacity);
+            }
+        }
+        this.releaseIds[this.size] = releaseId;
+        this.pathIds[this.size] = this.paths.intern(path);
+        return this.size++;
+    }
+
+    public void set(Feature feature, int row, int value) {
+        this.values[feature.ordinal()][row] = value;
+        this.present[feature.ordinal()].set(row);
+    }
+
+    /**
+     * @return Ritorna il valore della feature nella riga, 0 se la feature non è stata calcolata o la riga non ha un valore
+     */
+    public int get(Feature feature, int row) {
+        int[] column = this.values[feature.ordinal()];
+        return column != null ? column[row] : 0;
+    }
+
+    public boolean has(Feature feature, int row) {
+        BitSet column = this.present[feature.ordinal()];
+        return column != null && column.get(row);
+    }
+
+    public int getReleaseId(int row) {
+        return this.releaseIds[row];
+    }
+
+    public int getPathId(int row) {
+        return this.pathIds[row];
+    }
+
+    public String getPath(int row) {
+        return this.paths.get(this.pathIds[row]);
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public Set<Feature> getFeatures() {
+        return this.features;
+    }
+
+    /**
+     * @return Ritorna la colonna come mappa (release, className) -> valore, con le sole righe che hanno un valore
+     */
+    public Map<CompositeKey, Integer> toMap(Feature feature) {
+        Map<CompositeKey, Integer> map = new LinkedHashMap<>();
+        for(int row = 0; row < this.size; row++) {
+            if(this.has(feature, row)) {
+                map.put(new CompositeKey(this.releaseIds[row], this.getPath(row)), this.get(feature, row));
+            }
+        }
+        return map;
+    }
+}
@@ -0,0 +1,146 @@
+package features;
+
+import org.eclipse.jgit.lib.PersonIdent;
+
+import java.util.*;
+
+/**
+ * Accumulatori delle feature di processo di una release, indicizzati per id del path internato nello {@link mydatatype.StringPool}.
+ * I valori stanno in array int invece che in mappe con chiave stringa, e due classi con lo stesso nome in package diversi restano distinte.
+ * Tutte le feature derivano dalle stesse modifiche, quindi una classe ha un valore per tutte le feature appena viene toccata da un commit.
+ * Gli autori della release vengono internati in id locali alla release e ogni classe tiene un BitSet dei propri autori;
+ * gli id locali vengono tradotti in quelli dell'{@link AuthorRegistry} del progetto quando le release vengono unite.
+ */
+public class PathAccumulator {
+    private static final int INITIAL_CAPACITY = 256;
+
+    private final BitSet touched = new BitSet();
+    private int[] locTouched = new int[INITIAL_CAPACITY];
+    private int[] revisions = new int[INITIAL_CAPACITY];
+    private int[] locAdded = new int[INITIAL_CAPACITY];
+    private int[] maxLocAdded = new int[INITIAL_CAPACITY];
+    private int[] churn = new int[INITIAL_CAPACITY];
+    private int[] maxChurn = new int[INITIAL_CAPACITY];
+    private final Map<Integer, BitSet> authors = new HashMap<>();
+    private final Map<String, Integer> authorIds = new HashMap<>();
+    private final List<PersonIdent> authorIdents = new ArrayList<>();
+
+    /**
+     * Aggiunge le modifiche fatte da un commit alla classe
+     */
+    public void add(int pathId, int locTouched, int locAdded, int churn, PersonIdent author) {
+        this.ensureCapacity(pathId);
+        if(this.touched.get(pathId)) {
+            this.maxLocAdded[pathId] = Math.max(this.maxLocAdded[pathId], locAdded);
+            this.maxChurn[pathId] = Math.max(this.maxChurn[pathId], churn);
+        } else {
+            this.touched.set(pathId);
+            this.maxLocAdded[pathId] = locAdded;
+            this.maxChurn[pathId] = churn;
+        }
+        this.locTouched[pathId] += locTouched;
+        this.revisions[pathId]++;
+        this.locAdded[pathId] += locAdded;
+        this.churn[pathId] += churn;
+        if(author != null) {
+            this.authors.computeIfAbsent(pathId, key -> new BitSet()).set(this.internAuthor(author));
+        }
+    }
+
+    /**
+     * Sposta i valori accumulati da un path a quello in cui il file è stato rinominato, unendoli a quelli già presenti
+     */
+    public void move(int fromPathId, int toPathId) {
+        if(fromPathId == toPathId || !this.isTouched(fromPathId)) return;
+        this.ensureCapacity(toPathId);
+        if(this.touched.get(toPathId)) {
+            this.maxLocAdded[toPathId] = Math.max(this.maxLocAdded[toPathId], this.maxLocAdded[fromPathId]);
+            this.maxChurn[toPathId] = Math.max(this.maxChurn[toPathId], this.maxChurn[fromPathId]);
+        } else {
+            this.touched.set(toPathId);
+            this.maxLocAdded[toPathId] = this.maxLocAdded[fromPathId];
+            this.maxChurn[toPathId] = this.maxChurn[fromPathId];
+        }
+        this.locTouched[toPathId] += this.locTouched[fromPathId];
+        this.revisions[toPathId] += this.revisions[fromPathId];
+        this.locAdded[toPathId] += this.locAdded[fromPathId];
+        this.churn[toPathId] += this.churn[fromPathId];
+        BitSet moved = this.authors.remove(fromPathId);
+        if(moved != null) {
+            this.authors.computeIfAbsent(toPathId, key -> new BitSet()).or(moved);
+        }
+
+        this.touched.clear(fromPathId);
+        this.locTouched[fromPathId] = 0;
+        this.revisions[fromPathId] = 0;
+        this.locAdded[fromPathId] = 0;
+        this.maxLocAdded[fromPathId] = 0;
+        this.churn[fromPathId] = 0;
+        this.maxChurn[fromPathId] = 0;
+    }
+
+    public boolean isTouched(int pathId) {
+        return this.touched.get(pathId);
+    }
+
+    /**
+     * @return Ritorna il valore della feature per la classe; la classe deve essere stata toccata nella release
+     * @throws IllegalArgumentException se la feature non è una feature di processo
+     */
+    public int get(Feature feature, int pathId) {
+        switch (feature) {
+            case LOC_TOUCHED:
+                return this.locTouched[pathId];
+            case NR:
+                return this.revisions[pathId];
+            case NAUTH:
+                BitSet classAuthors = this.authors.get(pathId);
+                return classAuthors != null ? classAuthors.cardinality() : 0;
+            case LOC_ADDED:
+                return this.locAdded[pathId];
+            case MAX_LOC_ADDED:
+                return this.maxLocAdded[pathId];
+            case AVG_LOC_ADDED:
+                return this.locAdded[pathId] / this.revisions[pathId];
+            case CHURN:
+                return this.churn[pathId];
+            case MAX_CHURN:
+                return this.maxChurn[pathId];
+            default:
+                throw new IllegalArgumentException("Not a process feature: " + feature);
+        }
+    }
+
+    /**
+     * @return Ritorna gli id locali degli autori di ogni classe toccata nella release, indicizzati per id del path
+     */
+    public Map<Integer, BitSet> getAuthors() {
+        return this.authors;
+    }
+
+    /**
+     * @return Ritorna le identità degli autori della release, indicizzate per id locale
+     */
+    public List<PersonIdent> getAuthorIdents() {
+        return this.authorIdents;
+    }
+
+    /* Identità uguali per nome ed email hanno lo stesso id locale; gli alias vengono risolti dall'AuthorRegistry */
+    private int internAuthor(PersonIdent author) {
+        return this.authorIds.computeIfAbsent(author.getName() + '\n' + author.getEmailAddress(), key -> {
+            this.authorIdents.add(author);
+            return this.authorIdents.size() - 1;
+        });
+    }
+
+    private void ensureCapacity(int pathId) {
+        if(pathId < this.locTouched.length) return;
+        int capacity = Math.max(pathId + 1, this.locTouched.length * 2);
+        this.locTouched = Arrays.copyOf(this.locTouched, capacity);
+        this.revisions = Arrays.copyOf(this.revisions, capacity);
+        this.locAdded = Arrays.copyOf(this.locAdded, capacity);
+        this.maxLocAdded = Arrays.copyOf(this.maxLocAdded, capacity);
+        this.churn = Arrays.copyOf(this.churn, capacity);
+        this.maxChurn = Arrays.copyOf(this.maxChurn, capacity);
+    }
+}
@@ -0,0 +1,14 @@
+package features;
+
+import labeling.Tag;
+
+import java.io.IOException;
+
+/**
+ * Riceve le feature di una release appena sono definitive, nell'ordine della timeline.
+ * La tabella contiene solo le righe (release, className) della release e non viene più usata dopo la chiamata.
+ */
+@FunctionalInterface
+public interface ReleaseConsumer {
+    void accept(Tag release, FeatureTable table) throws IOException;
+}
@@ -0,0 +1,51 @@
+package features;
+
+import labeling.Tag;
+import org.eclipse.jgit.lib.PersonIdent;
+
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Risultato parziale del calcolo delle feature su una singola release.
+ * La tabella contiene solo le righe (release, className) della release, mentre gli autori
+ * vengono tenuti separati perché i loro id vanno assegnati dall'{@link AuthorRegistry} nell'ordine della timeline,
+ * insieme alle rinomine (path precedente, nuovo path) fatte nella release, dalla più vecchia.
+ * Gli autori di ogni classe sono id locali alla release, che indicizzano la lista delle identità.
+ */
+class ReleaseFeatures {
+    private final Tag release;
+    private final FeatureTable table;
+    private final List<PersonIdent> authorIdents;
+    private final Map<String, BitSet> authorsMap;
+    private final List<Map.Entry<String, String>> renames;
+
+    ReleaseFeatures(Tag release, FeatureTable table, List<PersonIdent> authorIdents, Map<String, BitSet> authorsMap, List<Map.Entry<String, String>> renames) {
+        this.release = release;
+        this.table = table;
+        this.authorIdents = authorIdents;
+        this.authorsMap = authorsMap;
+        this.renames = renames;
+    }
+
+    Tag getRelease() {
+        return release;
+    }
+
+    FeatureTable getTable() {
+        return table;
+    }
+
+    List<PersonIdent> getAuthorIdents() {
+        return authorIdents;
+    }
+
+    Map<String, BitSet> getAuthorsMap() {
+        return authorsMap;
+    }
+
+    List<Map.Entry<String, String>> getRenames() {
+        return renames;
+    }
+}
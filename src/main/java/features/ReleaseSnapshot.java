@@ -0,0 +1,34 @@
+package features;
+
+import org.eclipse.jgit.lib.ObjectId;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Classi valide dell'albero di una release, nell'ordine del TreeWalk, con il blob di ciascuna
+ */
+public class ReleaseSnapshot {
+    public static final ReleaseSnapshot EMPTY = new ReleaseSnapshot(new String[0], new ObjectId[0]);
+
+    private final String[] paths;
+    private final ObjectId[] blobIds;
+
+    ReleaseSnapshot(String[] paths, ObjectId[] blobIds) {
+        this.paths = paths;
+        this.blobIds = blobIds;
+    }
+
+    public int size() {
+        return this.paths.length;
+    }
+
+    public List<String> getPaths() {
+        return Collections.unmodifiableList(Arrays.asList(this.paths));
+    }
+
+    public List<ObjectId> getBlobIds() {
+        return Collections.unmodifiableList(Arrays.asList(this.blobIds));
+    }
+}
@@ -0,0 +1,108 @@
+package features;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.eclipse.jgit.treewalk.filter.TreeFilter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Tiene l'insieme delle classi valide dell'albero di ogni release, con il blob di ciascuna.
+ * Solo il primo albero viene percorso per intero; per le release successive viene applicato il diff tra il vecchio e il nuovo albero
+ * (aggiunte, cancellazioni, modifiche e quindi anche le rinomine), che salta i sotto-alberi identici senza leggerli.
+ * Le release vanno passate nell'ordine della timeline, da un solo thread.
+ */
+public class ReleaseSnapshotTracker implements AutoCloseable {
+    /* I path sono ordinati come nel TreeWalk ricorsivo, così le righe della release restano nello stesso ordine */
+    private final Map<String, ObjectId> classes = new TreeMap<>();
+    private final ObjectReader reader;
+    private final RevWalk revWalk;
+    private ObjectId treeId;
+    private int fullWalks;
+    private int treeDiffs;
+
+    /**
+     * @param reader reader con cui leggere commit e alberi, non viene chiuso
+     */
+    public ReleaseSnapshotTracker(ObjectReader reader) {
+        this.reader = reader;
+        this.revWalk = new RevWalk(reader);
+        this.revWalk.setRetainBody(false);
+    }
+
+    /**
+     * Porta lo snapshot all'albero del commit passato in input
+     * @param commitId commit di cui leggere l'albero
+     * @return Ritorna le classi valide dell'albero con i relativi blob
+     * @throws IOException
+     */
+    public ReleaseSnapshot advance(AnyObjectId commitId) throws IOException {
+        ObjectId newTreeId = this.revWalk.parseCommit(commitId).getTree().copy();
+        if(this.treeId == null) {
+            this.walk(newTreeId);
+            this.fullWalks++;
+        } else if(!this.treeId.equals(newTreeId)) {
+            this.diff(newTreeId);
+            this.treeDiffs++;
+        }
+        this.treeId = newTreeId;
+        return new ReleaseSnapshot(this.classes.keySet().toArray(new String[0]), this.classes.values().toArray(new ObjectId[0]));
+    }
+
+    private void walk(ObjectId newTreeId) throws IOException {
+        try (TreeWalk treeWalk = new TreeWalk(this.reader)) {
+            treeWalk.reset(newTreeId);
+            treeWalk.setRecursive(true);
+            while (treeWalk.next()) {
+                String path = treeWalk.getPathString();
+                if (FeatureCalculatorUtils.isPathValid(path)) {
+                    this.classes.put(path, treeWalk.getObjectId(0));
+                }
+            }
+        }
+    }
+
+    private void diff(ObjectId newTreeId) throws IOException {
+        try (TreeWalk treeWalk = new TreeWalk(this.reader)) {
+            treeWalk.addTree(this.treeId);
+            treeWalk.addTree(newTreeId);
+            treeWalk.setRecursive(true);
+            treeWalk.setFilter(TreeFilter.ANY_DIFF);
+            while (treeWalk.next()) {
+                String path = treeWalk.getPathString();
+                if (!FeatureCalculatorUtils.isPathValid(path)) continue;
+                if (treeWalk.getFileMode(1) == FileMode.MISSING) {
+                    /* Cancellata, o vecchio path di una rinomina */
+                    this.classes.remove(path);
+                } else {
+                    this.classes.put(path, treeWalk.getObjectId(1));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return Ritorna il numero di alberi percorsi per intero
+     */
+    public int getFullWalks() {
+        return fullWalks;
+    }
+
+    /**
+     * @return Ritorna il numero di alberi ottenuti applicando un diff allo snapshot precedente
+     */
+    public int getTreeDiffs() {
+        return treeDiffs;
+    }
+
+    @Override
+    public void close() {
+        this.revWalk.close();
+    }
+}
@@ -0,0 +1,97 @@
+package labeling;
+
+import myexception.OutOfCaseException;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import utils.Settings;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Elabora una lista di progetti su un pool work-stealing limitato. La dimensione del pool dipende dai core
+ * ({@link Settings#getProjectParallelism()}) e dalla memoria disponibile ({@link Settings#getProjectMemoryMb()} per progetto).
+ * Il fallimento di un progetto viene registrato e non interrompe gli altri.
+ */
+public class BatchRunner {
+    private static final Logger LOGGER = Logger.getLogger(BatchRunner.class.getName());
+
+    private BatchRunner() {}
+
+    /**
+     * Elaborazione di un singolo progetto
+     */
+    @FunctionalInterface
+    public interface ProjectTask {
+        void process(ProjectSpec project) throws GitAPIException, IOException, ParseException, OutOfCaseException;
+    }
+
+    /**
+     * Esegue task su ogni progetto, al più {@link #getPoolSize(int)} alla volta, e registra l'avanzamento
+     * @param projects progetti da elaborare
+     * @param task elaborazione di un progetto
+     * @return Ritorna i progetti falliti con l'eccezione che li ha interrotti, nell'ordine della lista
+     */
+    public static Map<ProjectSpec, Exception> run(List<ProjectSpec> projects, ProjectTask task) {
+        Map<ProjectSpec, Exception> failures = new ConcurrentHashMap<>();
+        if(projects.isEmpty()) return failures;
+        int poolSize = BatchRunner.getPoolSize(projects.size());
+        int total = projects.size();
+        AtomicInteger completed = new AtomicInteger();
+        LOGGER.log(Level.INFO, "Processing {0} projects on {1} threads", new Object[] {total, poolSize});
+
+        ForkJoinPool pool = new ForkJoinPool(poolSize);
+        try {
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for(ProjectSpec project : projects) {
+                tasks.add(() -> {
+                    BatchRunner.runProject(project, task, failures);
+                    LOGGER.log(Level.INFO, "[{0}/{1}] projects done", new Object[] {completed.incrementAndGet(), total});
+                    return null;
+                });
+            }
+            pool.invokeAll(tasks);
+        } finally {
+            pool.shutdown();
+        }
+
+        Map<ProjectSpec, Exception> ordered = new LinkedHashMap<>();
+        for(ProjectSpec project : projects) {
+            if(failures.containsKey(project)) {
+                ordered.put(project, failures.get(project));
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * @return Ritorna il numero di progetti da elaborare in parallelo: non più dei progetti, dei thread configurati
+     * e dei progetti che entrano nella memoria massima della JVM
+     */
+    public static int getPoolSize(int projects) {
+        long projectMemory = Settings.getProjectMemoryMb() * 1024L * 1024L;
+        long byMemory = Runtime.getRuntime().maxMemory() / projectMemory;
+        long size = Math.min(Math.min(projects, Settings.getProjectParallelism()), byMemory);
+        return (int) Math.max(1, size);
+    }
+
+    private static void runProject(ProjectSpec project, ProjectTask task, Map<ProjectSpec, Exception> failures) {
+        long start = System.nanoTime();
+        LOGGER.log(Level.INFO, "{0}: started", project);
+        try {
+            task.process(project);
+            LOGGER.log(Level.INFO, "{0}: completed in {1} s", new Object[] {project, BatchRunner.elapsedSeconds(start)});
+        } catch (GitAPIException | IOException | ParseException | OutOfCaseException | RuntimeException e) {
+            failures.put(project, e);
+            LOGGER.log(Level.SEVERE, e, () -> project + ": failed after " + BatchRunner.elapsedSeconds(start) + " s");
+        }
+    }
+
+    private static long elapsedSeconds(long start) {
+        return TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - start);
+    }
+}
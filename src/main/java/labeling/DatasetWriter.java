@@ -0,0 +1,146 @@
+package labeling;
+
+import com.opencsv.CSVWriter;
+import com.opencsv.ICSVWriter;
+import features.Feature;
+import features.FeatureTable;
+import features.ReleaseConsumer;
+import mydatatype.CompositeKey;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+
+/**
+ * Scrive il dataset una release alla volta: le righe di una release vengono scritte appena le sue feature sono definitive,
+ * quindi le colonne di tutta la storia non vengono mai tenute in memoria. Le label devono essere già calcolate.
+ * Le righe vengono scritte in un file temporaneo accanto al dataset, che lo sostituisce solo con {@link #commit()}:
+ * un'esecuzione fallita lascia il dataset precedente intatto.
+ * In modalità incrementale le righe già scritte delle release precedenti vengono copiate con le label ricalcolate,
+ * dato che i bug di una release vengono di solito fixati nelle release successive: il risultato è uguale a una ricostruzione completa.
+ */
+public class DatasetWriter implements ReleaseConsumer, Closeable {
+    static final String [] HEADER = {"release", "class_name", "size", "LOC_touched", "NR", "NAuth", "LOC_added", "MAX_LOC_added", "AVG_LOC_added", "churn", "MAX_churn", "bug_tickets", "buggy"};
+
+    private final File file;
+    private final File tmp;
+    private final CSVWriter writer;
+    private final Map<CompositeKey, Integer> buggyClasses;
+    private int rows;
+    private boolean committed;
+
+    /**
+     * @param file file del dataset
+     * @param firstReleaseId id della prima release che verrà scritta; se maggiore di 1 le righe del dataset esistente
+     *                       delle release precedenti vengono mantenute e rietichettate, le altre vengono scartate
+     * @param buggyClasses coppie (release, classe) buggy con il numero di ticket, come ritornate dal labeling
+     * @throws IOException
+     */
+    public DatasetWriter(File file, int firstReleaseId, Map<CompositeKey, Integer> buggyClasses) throws IOException {
+        this.file = file;
+        this.tmp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+        Writer fileWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(this.tmp), StandardCharsets.UTF_8));
+        this.writer = new CSVWriter(fileWriter, ICSVWriter.DEFAULT_SEPARATOR, ICSVWriter.NO_QUOTE_CHARACTER, ICSVWriter.DEFAULT_ESCAPE_CHARACTER, ICSVWriter.RFC4180_LINE_END);
+        this.buggyClasses = buggyClasses;
+        try {
+            if(firstReleaseId > 1) {
+                this.relabel(fileWriter, firstReleaseId);
+            } else {
+                this.writer.writeNext(HEADER);
+            }
+        } catch (IOException e) {
+            this.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Copia le righe del dataset esistente con release precedente a firstReleaseId, sostituendo bug_tickets e buggy con le label correnti.
+     * Le righe vengono copiate così come sono state scritte, il CSVWriter non ha buffer propri e scrive sullo stesso writer.
+     */
+    private void relabel(Writer out, int firstReleaseId) throws IOException {
+        int featureColumns = HEADER.length - 4;
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(this.file), StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            if(line == null) throw new IOException("Empty dataset " + this.file);
+            out.write(line);
+            out.write(ICSVWriter.RFC4180_LINE_END);
+            while((line = reader.readLine()) != null) {
+                int releaseEnd = line.indexOf(',');
+                if(releaseEnd < 0 || Integer.parseInt(line.substring(0, releaseEnd)) >= firstReleaseId) continue;
+                /* Il path può contenere virgole: lo ricavo togliendo dalla fine le label e le colonne delle feature */
+                int labelsStart = DatasetWriter.lastFieldsStart(line, 2);
+                int featuresStart = DatasetWriter.lastFieldsStart(line.substring(0, labelsStart - 1), featureColumns);
+                int releaseId = Integer.parseInt(line.substring(0, releaseEnd));
+                String path = line.substring(releaseEnd + 1, featuresStart - 1);
+                int bugTickets = this.buggyClasses.getOrDefault(new CompositeKey(releaseId, path), 0);
+                out.write(line, 0, labelsStart);
+                out.write(bugTickets + "," + Main.getBuggyness(bugTickets));
+                out.write(ICSVWriter.RFC4180_LINE_END);
+            }
+        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+            throw new IOException("Invalid row in dataset " + this.file, e);
+        }
+    }
+
+    /**
+     * @return Ritorna l'indice del primo carattere degli ultimi count campi della riga
+     */
+    private static int lastFieldsStart(String line, int count) {
+        int start = line.length();
+        for(int i = 0; i < count; i++) {
+            start = line.lastIndexOf(',', start - 1);
+        }
+        return start + 1;
+    }
+
+    @Override
+    public void accept(Tag release, FeatureTable table) throws IOException {
+        Feature[] features = Feature.values();
+        String[] row = new String[HEADER.length];
+        for(int i = 0; i < table.size(); i++) {
+            int releaseId = table.getReleaseId(i);
+            String path = table.getPath(i);
+            row[0] = String.valueOf(releaseId);
+            row[1] = path;
+            /* Le colonne delle feature seguono l'ordine dell'enum Feature, le feature non calcolate valgono 0 */
+            for(int f = 0; f < features.length; f++) {
+                row[f + 2] = String.valueOf(table.get(features[f], i));
+            }
+            int bugTickets = this.buggyClasses.getOrDefault(new CompositeKey(releaseId, path), 0);
+            row[features.length + 2] = String.valueOf(bugTickets);
+            row[features.length + 3] = Main.getBuggyness(bugTickets);
+            this.writer.writeNext(row);
+        }
+        this.rows += table.size();
+    }
+
+    public int getRows() {
+        return this.rows;
+    }
+
+    /**
+     * Chiude il file temporaneo e lo sposta al posto del dataset
+     * @throws IOException
+     */
+    public void commit() throws IOException {
+        this.writer.close();
+        Files.move(this.tmp.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        this.committed = true;
+    }
+
+    /**
+     * Se il dataset non è stato confermato con {@link #commit()} il file temporaneo viene cancellato
+     */
+    @Override
+    public void close() throws IOException {
+        if(this.committed) return;
+        try {
+            this.writer.close();
+        } finally {
+            Files.deleteIfExists(this.tmp.toPath());
+        }
+    }
+}
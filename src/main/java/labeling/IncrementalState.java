@@ -0,0 +1,112 @@
+package labeling;
+
+import features.AuthorHistory;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Stato salvato alla fine di un'esecuzione, usato dalla modalità incrementale per calcolare solo le feature delle nuove release.
+ * Contiene l'ultimo tag della timeline già elaborato (le righe del dataset arrivano fino alla release precedente)
+ * e gli autori cumulativi di ogni classe usati da NAUTH. Le label non fanno parte dello stato: vengono ricalcolate ad ogni esecuzione
+ * su tutte le righe, perché i bug di una release vengono di solito fixati nelle release successive.
+ */
+public class IncrementalState {
+    private static final Logger LOGGER = Logger.getLogger(IncrementalState.class.getName());
+    /* Versione 2: gli autori sono indicizzati per path completo della classe e non più per nome del file
+     * Versione 3: gli autori sono id del registro delle persone, con gli alias di nome ed email
+     * Versione 4: lo stato di proportion non viene più salvato */
+    private static final int FORMAT = 4;
+
+    private final String lastTagName;
+    private final Integer lastReleaseId;
+    private final List<String> columns;
+    private final AuthorHistory authorHistory;
+
+    public IncrementalState(String lastTagName, Integer lastReleaseId, List<String> columns, AuthorHistory authorHistory) {
+        this.lastTagName = lastTagName;
+        this.lastReleaseId = lastReleaseId;
+        this.columns = columns;
+        this.authorHistory = authorHistory;
+    }
+
+    /**
+     * @return Ritorna lo stato salvato nel file, null se il file non esiste o non è leggibile
+     */
+    public static IncrementalState load(File file) {
+        if(!file.isFile()) return null;
+        try(Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+            JSONObject json = new JSONObject(new JSONTokener(reader));
+            if(json.optInt("format", 1) != FORMAT) {
+                LOGGER.log(Level.INFO, "Incremental state {0} has an old format, rebuilding the dataset", file);
+                return null;
+            }
+            List<String> columns = new ArrayList<>();
+            JSONArray columnsJson = json.optJSONArray("columns");
+            if(columnsJson != null) {
+                for(int i = 0; i < columnsJson.length(); i++) {
+                    columns.add(columnsJson.getString(i));
+                }
+            }
+            AuthorHistory authorHistory = AuthorHistory.fromJson(json.getJSONObject("authors"));
+            return new IncrementalState(json.getString("lastTag"), json.getInt("lastReleaseId"), columns, authorHistory);
+        } catch (IOException | JSONException e) {
+            LOGGER.log(Level.WARNING, e, () -> "Cannot read incremental state " + file + ", rebuilding the dataset");
+            return null;
+        }
+    }
+
+    /**
+     * Salva lo stato su file passando per un file temporaneo, in modo da non lasciare mai uno stato scritto a metà
+     */
+    public void save(File file) throws IOException {
+        JSONObject json = new JSONObject();
+        json.put("format", FORMAT);
+        json.put("lastTag", this.lastTagName);
+        json.put("lastReleaseId", this.lastReleaseId);
+        json.put("columns", new JSONArray(this.columns));
+        json.put("authors", this.authorHistory.toJson());
+
+        File tmp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+        try(Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+            json.write(writer);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Controlla che la timeline corrente sia un'estensione di quella dell'esecuzione precedente:
+     * l'ultimo tag elaborato deve esistere ancora e avere lo stesso id
+     */
+    public boolean isCompatibleWith(ReleaseKeeper releaseKeeper) {
+        return Objects.equals(releaseKeeper.getIdFromTagName(this.lastTagName), this.lastReleaseId);
+    }
+
+    /**
+     * Le nuove righe vengono accodate al dataset esistente, quindi le colonne devono essere le stesse dell'esecuzione precedente
+     */
+    public boolean hasColumns(String[] header) {
+        return this.columns.equals(Arrays.asList(header));
+    }
+
+    public String getLastTagName() {
+        return lastTagName;
+    }
+
+    public Integer getLastReleaseId() {
+        return lastReleaseId;
+    }
+
+    public AuthorHistory getAuthorHistory() {
+        return authorHistory;
+    }
+}
@@ -1,16 +1,12 @@
 package labeling;
 
 import logging.LoggingUtils;
+import logging.Metrics;
 import mydatatype.CompositeKey;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.json.JSONArray;
-import org.json.JSONObject;
-import utils.GitUtils;
-import utils.ParseUtils;
-import utils.StringUtils;
 
-import java.io.File;
 import java.io.IOException;
 import java.text.ParseException;
 import java.util.*;
@@ -22,49 +18,79 @@ public class Labeling {
     private Labeling() {}
     /**
      *
-     * @param git
-     * @return  Questo metodo ritorna una lista di CompositeKey che contiene quindi le coppie (release, classe) buggy
+     * @param context progetto da etichettare
+     * @return  Questo metodo ritorna una mappa senza ripetizioni dalle coppie (release, classe) buggy al numero di ticket distinti che le rendono buggy
      * @throws IOException
      * @throws GitAPIException
      * @throws ParseException
      */
-    public static List<CompositeKey> affectedVersionLabeling (Git git, String projName) throws IOException, GitAPIException, ParseException {
+    public static Map<CompositeKey, Integer> affectedVersionLabeling (ProjectContext context) throws IOException, GitAPIException, ParseException {
         LOGGER.log(Level.INFO, "Searching for buggy class...");
 
-        List<CompositeKey> buggyClasses = new ArrayList<>();
-        Map<Tag, Integer> releases = GitUtils.getReleaseDate(git);
+        Git git = context.getGit();
+        String projName = context.getProjectName();
+        Map<CompositeKey, Integer> buggyClasses = new LinkedHashMap<>();
+        Map<Tag, Integer> releases = context.getReleaseKeeper().getReleaseMap();
         LoggingUtils.logMap(LOGGER, releases);
-        JSONArray issues = RetrieveTicketsID.retrieveTicketIDs(projName);
-        ProportionLabeling proportionLabeling = ProportionLabeling.getInstance();
-        proportionLabeling.incrementalProportion(git, issues);
+        Metrics metrics = context.getMetrics();
+        List<Ticket> tickets;
+        Metrics.Stage ticketsStage = metrics.stage("tickets");
+        try {
+            tickets = RetrieveTicketsID.retrieveTickets(projName, context.getReleaseKeeper());
+        } finally {
+            ticketsStage.stop();
+        }
+        metrics.add("tickets", tickets.size());
+        TicketCommitIndex ticketCommitIndex;
+        Metrics.Stage indexStage = metrics.stage("ticketIndex");
+        try {
+            ticketCommitIndex = TicketCommitIndex.build(projName, context.getRepositoryAccess().getReader(), context.getHistoryBackend(), context.getCommitIndex().getHistory());
+        } finally {
+            indexStage.stop();
+        }
+        ProportionLabeling proportionLabeling = context.getProportionLabeling();
+        Metrics.Stage proportionStage = metrics.stage("proportion");
+        try {
+            proportionLabeling.incrementalProportion(git, tickets);
+        } finally {
+            proportionStage.stop();
+        }
 
         /* Mi prendo tutti i ticket e cerco su git il commit corrispondente
         *  Per i ticket che riportano l'affected version posso fare direttamente il labeling
         *  Se l'affected version non è riportata devo usare proportion */
-        for(int i = 0; i < issues.length(); i++) {
-            JSONObject jsonObject = issues.getJSONObject(i);
-            String tickedID = jsonObject.get("key").toString();
-            JSONObject fields = jsonObject.getJSONObject("fields");
-            JSONArray versionsJson = fields.getJSONArray("versions");
-            String resolutionDate = fields.get("resolutiondate").toString();
-            String created = fields.get("created").toString();
-            LOGGER.log(Level.INFO, () -> tickedID + " -> Opened: " + created + " Closed: " + resolutionDate);
-            if(versionsJson.length() == 0) {
-                LOGGER.log(Level.INFO, "Affected Version not available for this ticket. Using the proportion method...");
-                Integer predictedIV = proportionLabeling.computePredictedIV(git, ParseUtils.convertToDate(created), ParseUtils.convertToDate(resolutionDate));
-                buggyClasses.addAll(Labeling.getAffectedVersions(git, ParseUtils.convertToDate(resolutionDate), predictedIV, tickedID));
-            }
-            else {
-                LOGGER.log(Level.INFO, "Affected Version available for this ticket!");
-                List<String> versions = Labeling.jsonArrayToList(versionsJson, "name");
-                buggyClasses.addAll(Labeling.simpleLabeling(git,versions, tickedID));
+        Metrics.Stage labelingStage = metrics.stage("labeling");
+        try {
+            for(Ticket ticket : tickets) {
+                LOGGER.log(Level.FINE, ticket::toString);
+                if(!ticket.hasAffectedVersions()) {
+                    LOGGER.log(Level.FINE, "Affected Version not available for this ticket. Using the proportion method...");
+                    Integer predictedIV = proportionLabeling.computePredictedIV(ticket.getCreatedTime(), ticket.getResolvedTime());
+                    Labeling.addTicket(buggyClasses, Labeling.getAffectedVersions(ticketCommitIndex, context, ticket.getResolvedTime(), predictedIV, ticket.getKey()));
+                }
+                else {
+                    LOGGER.log(Level.FINE, "Affected Version available for this ticket!");
+                    Labeling.addTicket(buggyClasses, Labeling.simpleLabeling(ticketCommitIndex, ticket));
+                }
             }
-
+        } finally {
+            labelingStage.stop();
         }
 
         return buggyClasses;
     }
 
+    /**
+     * Conta un ticket per ognuna delle coppie (release, classe) che rende buggy
+     * @param buggyClasses mappa coppia -> numero di ticket
+     * @param ticketClasses coppie buggy del ticket, senza ripetizioni
+     */
+    public static void addTicket(Map<CompositeKey, Integer> buggyClasses, Set<CompositeKey> ticketClasses) {
+        for(CompositeKey key : ticketClasses) {
+            buggyClasses.merge(key, 1, Integer::sum);
+        }
+    }
+
     /**
      * Prende come input un JSONArray e il nome del campo di interesse. Per ogni JSONObject nell'array
      * prende il campo selezionato e lo aggiunge alla lista.
@@ -84,52 +110,75 @@ public class Labeling {
     }
 
     /**
-     * Prende come input un oggetto Git, l'id del ticked, e la lista delle release difettose.
-     * Fa un diff sul repository per vedere quali classi sono state modificate dal relativo commit e le classifica come buggy.
-     * @param git
+     * Prende come input l'indice ticket -> commit, l'id del ticked, e la lista delle release difettose.
+     * Cerca nell'indice quali classi sono state modificate dai commit del ticket e le classifica come buggy.
+     * @param ticketCommitIndex
+     * @param releaseKeeper timeline del progetto
      * @param versions
      * @param ticketID
-     * @return Ritorna una lista di CompositeKey (release, classe) che sono buggy
-     * @throws GitAPIException
-     * @throws IOException
+     * @return Ritorna l'insieme delle CompositeKey (release, classe) che sono buggy
      */
-    public static List<CompositeKey> simpleLabeling(Git git, List<String> versions, String ticketID) throws GitAPIException, IOException {
-        List<CompositeKey> affectedVersion = new ArrayList<>();
-        List<String> buggyClasses = GitUtils.getDiffClasses(git, ticketID);
+    public static Set<CompositeKey> simpleLabeling(TicketCommitIndex ticketCommitIndex, ReleaseKeeper releaseKeeper, List<String> versions, String ticketID) {
+        Set<CompositeKey> affectedVersion = new LinkedHashSet<>();
+        List<String> buggyClasses = ticketCommitIndex.getDiffClasses(ticketID);
 
         for(String version : versions) {
             for (String buggyClass : buggyClasses) {
-                CompositeKey key = new CompositeKey(ReleaseKeeper.getInstance().getIdFromTagName("release-" + version),  buggyClass);
+                CompositeKey key = new CompositeKey(releaseKeeper.getIdFromTagName("release-" + version),  buggyClass);
                 affectedVersion.add(key);
             }
         }
-        LOGGER.log(Level.INFO, () -> "Affected Version: " + affectedVersion);
+        LOGGER.log(Level.FINE, () -> "Affected Version: " + affectedVersion);
+
+        return affectedVersion;
+    }
+
+    /**
+     * Come {@link #simpleLabeling(TicketCommitIndex, ReleaseKeeper, List, String)}, usando le affected version già risolte nel ticket
+     * @return Ritorna l'insieme delle CompositeKey (release, classe) che sono buggy
+     */
+    public static Set<CompositeKey> simpleLabeling(TicketCommitIndex ticketCommitIndex, Ticket ticket) {
+        Set<CompositeKey> affectedVersion = new LinkedHashSet<>();
+        List<String> buggyClasses = ticketCommitIndex.getDiffClasses(ticket.getKey());
+
+        for(int releaseId : ticket.getAffectedReleaseIds()) {
+            for (String buggyClass : buggyClasses) {
+                affectedVersion.add(new CompositeKey(releaseId, buggyClass));
+            }
+        }
+        LOGGER.log(Level.FINE, () -> "Affected Version: " + affectedVersion);
 
         return affectedVersion;
     }
 
     /**
-     * Effettua prima una git diff sul commit con l'id del ticket per vedere quali classi sono state toccate da quel commit.
+     * Cerca prima nell'indice le classi toccate dai commit con l'id del ticket.
      * Poi calcola la fixed version e aggiunge alla lista delle affected version ogni release compresa tra predictedIV e fixedVersion
-     * @param git oggetto che rappresenta il collegamento al repository git
+     * @param ticketCommitIndex indice ticket -> classi toccate
+     * @param context progetto del ticket
      * @param fixedDate data della chiusura del ticket
      * @param predictedIV injected version predetta con proportion
      * @param ticketID id del ticket in jira
-     * @return Ritorna una lista con le CompositeKey buggy
-     * @throws GitAPIException
-     * @throws IOException
+     * @return Ritorna l'insieme delle CompositeKey buggy
      */
-    public static List<CompositeKey> getAffectedVersions(Git git, Date fixedDate, Integer predictedIV, String ticketID) throws GitAPIException, IOException {
-        List<CompositeKey> affectedVersion = new ArrayList<>();
-        List<String> buggyClasses = GitUtils.getDiffClasses(git, ticketID);
-
-        int fixedVersion = ProportionLabeling.getNextVersion(fixedDate);
-        for (Tag tag : ReleaseKeeper.getInstance().getReleaseKeySet()) {
-            if(ReleaseKeeper.getInstance().getIdFromTag(tag) >= predictedIV && ReleaseKeeper.getInstance().getIdFromTag(tag) < fixedVersion) {
-                for(String buggyClass : buggyClasses) {
-                    CompositeKey key = new CompositeKey(ReleaseKeeper.getInstance().getIdFromTag(tag), buggyClass);
-                    affectedVersion.add(key);
-                }
+    public static Set<CompositeKey> getAffectedVersions(TicketCommitIndex ticketCommitIndex, ProjectContext context, Date fixedDate, Integer predictedIV, String ticketID) {
+        return Labeling.getAffectedVersions(ticketCommitIndex, context, fixedDate.getTime(), predictedIV, ticketID);
+    }
+
+    /**
+     * Come {@link #getAffectedVersions(TicketCommitIndex, ProjectContext, Date, Integer, String)}, con la data di chiusura in millisecondi
+     */
+    public static Set<CompositeKey> getAffectedVersions(TicketCommitIndex ticketCommitIndex, ProjectContext context, long fixedTime, Integer predictedIV, String ticketID) {
+        Set<CompositeKey> affectedVersion = new LinkedHashSet<>();
+        List<String> buggyClasses = ticketCommitIndex.getDiffClasses(ticketID);
+
+        int fixedVersion = context.getProportionLabeling().getNextVersion(fixedTime);
+        /* Gli id delle release sono consecutivi, quindi scorro direttamente l'intervallo [predictedIV, fixedVersion) */
+        for (int releaseId = Math.max(1, predictedIV); releaseId < fixedVersion; releaseId++) {
+            if(context.getReleaseKeeper().getTagFromId(releaseId) == null) continue;
+            for(String buggyClass : buggyClasses) {
+                CompositeKey key = new CompositeKey(releaseId, buggyClass);
+                affectedVersion.add(key);
             }
         }
 
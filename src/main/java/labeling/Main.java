@@ -1,41 +1,51 @@
 package labeling;
 
-import com.opencsv.CSVWriter;
-import com.opencsv.ICSVWriter;
+import features.AuthorHistory;
 import features.Feature;
 import features.FeatureCalculator;
+import logging.Metrics;
 import mydatatype.CompositeKey;
 import myexception.OutOfCaseException;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
-import utils.GitUtils;
+import utils.BlobLineCountCache;
+import utils.DiffCache;
+import utils.RepositoryAccess;
+import utils.Settings;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.text.ParseException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 public class Main {
     private static final Logger LOGGER = Logger.getLogger(Main.class.getName());
 
-    public static Map<CompositeKey, String> merge(List<CompositeKey> allClasses, List<CompositeKey> buggyClasses) {
-        Map<CompositeKey, String> result = new LinkedHashMap<>();
+    /**
+     * @param allClasses righe del dataset
+     * @param buggyClasses coppie (release, classe) buggy con il numero di ticket che le rendono buggy, come ritornate dal labeling
+     * @return Ritorna per ogni riga il numero di ticket che la rendono buggy, 0 se la classe non è buggy in quella release
+     */
+    public static Map<CompositeKey, Integer> merge(List<CompositeKey> allClasses, Map<CompositeKey, Integer> buggyClasses) {
+        Map<CompositeKey, Integer> result = new LinkedHashMap<>();
 
         for(CompositeKey className : allClasses) {
-            if(buggyClasses.contains(className)) {
-                result.put(className, "yes");
-            }
-            else {
-                result.put(className, "no");
-            }
+            result.put(className, buggyClasses.getOrDefault(className, 0));
         }
 
         return result;
     }
 
+    public static String getBuggyness(int bugTickets) {
+        return bugTickets > 0 ? "yes" : "no";
+    }
+
     public static String getValueToWrite(Integer intValue) {
         if(intValue == null) {
             return "0";
@@ -44,53 +54,114 @@ public class Main {
         }
     }
 
-    public static void main (String [] args) throws GitAPIException, IOException, ParseException, OutOfCaseException {
-        for(Project project : Project.values()) {
-            LOGGER.log(Level.INFO, "Scanning project {0}...", project.label.toUpperCase());
-            Git git = Git.open(new File(project.label + "/.git"));
-            ReleaseKeeper.getInstance().setReleaseMap(GitUtils.getReleaseDate(git));
-            Map<CompositeKey, Integer> sizes = FeatureCalculator.computeFeature(git, Feature.SIZE);
-            Map<CompositeKey, Integer> locTouched = FeatureCalculator.computeFeature(git, Feature.LOC_TOUCHED);
-            Map<CompositeKey, Integer> numberOfRevision = FeatureCalculator.computeFeature(git, Feature.NR);
-            Map<CompositeKey, Integer> numberOfAuthors = FeatureCalculator.computeFeature(git, Feature.NAUTH);
-            Map<CompositeKey, Integer> locAdded = FeatureCalculator.computeFeature(git, Feature.LOC_ADDED);
-            Map<CompositeKey, Integer> maxLocAdded = FeatureCalculator.computeFeature(git, Feature.MAX_LOC_ADDED);
-            Map<CompositeKey, Integer> avgLocAdded = FeatureCalculator.computeFeature(git, Feature.AVG_LOC_ADDED);
-            Map<CompositeKey, Integer> churnMap = FeatureCalculator.computeFeature(git, Feature.CHURN);
-            Map<CompositeKey, Integer> maxChurnMap = FeatureCalculator.computeFeature(git, Feature.MAX_CHURN);
+    /**
+     * Calcola le label del progetto per il thread di labeling, riportando le eccezioni controllate nella CompletionException
+     */
+    private static Map<CompositeKey, Integer> label(ProjectContext context) {
+        try {
+            return Labeling.affectedVersionLabeling(context);
+        } catch (IOException | GitAPIException | ParseException e) {
+            throw new CompletionException(e);
+        }
+    }
 
-            List<CompositeKey> classNames = new ArrayList<>(sizes.keySet());
-            List<CompositeKey> buggyClasses = Labeling.affectedVersionLabeling(git, project.label.toUpperCase());
-            Map<CompositeKey, String> buggyness = Main.merge(classNames, buggyClasses);
+    /**
+     * Elabora i progetti del manifest passato come primo argomento (o nella proprietà {@link Settings#MANIFEST});
+     * senza manifest elabora i progetti predefiniti di {@link Project}. Termina con codice 1 se almeno un progetto fallisce.
+     */
+    public static void main (String [] args) throws IOException {
+        String manifest = args.length > 0 ? args[0] : Settings.getManifest();
+        List<ProjectSpec> projects = new ArrayList<>();
+        if(manifest != null) {
+            projects.addAll(ProjectSpec.readManifest(new File(manifest)));
+        } else {
+            for(Project project : Project.values()) {
+                projects.add(ProjectSpec.of(project));
+            }
+        }
 
-            FileWriter fileWriter = new FileWriter(project.label + "_dataset.csv");
-            CSVWriter writer = new CSVWriter(fileWriter, ICSVWriter.DEFAULT_SEPARATOR, ICSVWriter.NO_QUOTE_CHARACTER, ICSVWriter.DEFAULT_ESCAPE_CHARACTER, ICSVWriter.RFC4180_LINE_END);
-            String [] header = {"release", "class_name", "size", "LOC_touched", "NR", "NAuth", "LOC_added", "MAX_LOC_added", "AVG_LOC_added", "churn", "MAX_churn", "buggy"};
-            writer.writeNext(header);
+        RepositoryAccess.configure();
+        Map<ProjectSpec, Exception> failures = BatchRunner.run(projects, Main::processProject);
+        LOGGER.log(Level.INFO, "{0} of {1} projects completed", new Object[] {projects.size() - failures.size(), projects.size()});
+        if(!failures.isEmpty()) {
+            for(Map.Entry<ProjectSpec, Exception> failure : failures.entrySet()) {
+                LOGGER.log(Level.SEVERE, "{0} failed: {1}", new Object[] {failure.getKey(), failure.getValue()});
+            }
+            System.exit(1);
+        }
+    }
 
-            Set<CompositeKey> keys = sizes.keySet();
-            for(CompositeKey key : keys) {
-                String size = getValueToWrite(sizes.get(key));
-                String locTouchedForThisClass = getValueToWrite(locTouched.get(key));
-                String nr = getValueToWrite(numberOfRevision.get(key));
-                String nAuth = getValueToWrite(numberOfAuthors.get(key));
-                String locAddedForThisClass = getValueToWrite(locAdded.get(key));
-                String maxLocAddedForThisClass = getValueToWrite(maxLocAdded.get(key));
-                String avgLocAddedForThisClass = getValueToWrite(avgLocAdded.get(key));
-                String churn = getValueToWrite(churnMap.get(key));
-                String maxChurn = getValueToWrite(maxChurnMap.get(key));
-                String buggy = buggyness.get(key);
-                writer.writeNext(new String[] {String.valueOf(key.getRelease()), key.getClassName(), size, locTouchedForThisClass, nr,
-                        nAuth, locAddedForThisClass, maxLocAddedForThisClass, avgLocAddedForThisClass, churn, maxChurn, buggy});
+    /**
+     * Crea o aggiorna il dataset di un progetto, usando un contesto separato da quello degli altri progetti
+     */
+    public static void processProject(ProjectSpec project) throws GitAPIException, IOException, ParseException, OutOfCaseException {
+        LOGGER.log(Level.INFO, "Scanning project {0}...", project.getJiraKey());
+        try(Git git = Git.open(project.getRepository());
+            ProjectContext context = ProjectContext.open(project.getJiraKey(), git, project.getTagPattern(), project.isDropLastTag())) {
+            DiffCache diffCache = DiffCache.getInstance(git.getRepository());
+            BlobLineCountCache blobCache = BlobLineCountCache.getInstance(git.getRepository());
+            Metrics metrics = context.getMetrics();
+            ReleaseKeeper releaseKeeper = context.getReleaseKeeper();
+            File datasetFile = new File(project.getName() + "_dataset.csv");
+            File stateFile = new File(project.getName() + "_state.json");
+            /* In modalità incrementale riprendo dall'ultimo tag elaborato, se la timeline è ancora compatibile */
+            IncrementalState state = Settings.isIncremental() && datasetFile.isFile() ? IncrementalState.load(stateFile) : null;
+            if(state != null && !state.isCompatibleWith(releaseKeeper)) {
+                LOGGER.log(Level.INFO, "{0}: release timeline changed since the last run, rebuilding the dataset", project.getName());
+                state = null;
+            }
+            if(state != null && !state.hasColumns(DatasetWriter.HEADER)) {
+                LOGGER.log(Level.INFO, "{0}: dataset columns changed since the last run, rebuilding the dataset", project.getName());
+                state = null;
             }
-            writer.flush();
+            int lastReleaseId = releaseKeeper.getReleaseMap().size();
+            int firstReleaseId = state != null ? state.getLastReleaseId() : 1;
+            if(state != null && firstReleaseId >= lastReleaseId) {
+                LOGGER.log(Level.INFO, "{0}: no new release since {1}, only the labels will be updated", new Object[] {project.getName(), state.getLastTagName()});
+            }
+            AuthorHistory authorHistory = state != null ? state.getAuthorHistory() : new AuthorHistory();
 
-            Set<Tag> releases = ReleaseKeeper.getInstance().getReleaseKeySet();
-            for(Tag release: releases) {
-                LOGGER.log(Level.INFO, ()-> "Release Name: " + release.getTagName() + " Release Date: " + release.getTagDate() + " Release id: " + ReleaseKeeper.getInstance().getIdFromTag(release));
+            /* Le label non dipendono dalle feature: ticket jira, indice dei ticket e proportion vengono calcolati su un thread separato
+             * mentre le feature procedono; le release pronte attendono le label nella coda del writer.
+             * Anche in modalità incrementale le label vengono ricalcolate su tutta la storia e applicate alle righe già scritte */
+            ExecutorService labelingExecutor = Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "labeling-" + project.getName());
+                thread.setDaemon(true);
+                return thread;
+            });
+            CompletableFuture<Map<CompositeKey, Integer>> labels = CompletableFuture.supplyAsync(() -> Main.label(context), labelingExecutor);
+            try {
+                /* In modalità incrementale le nuove righe vengono accodate a quelle esistenti */
+                PipelinedDatasetWriter writer = new PipelinedDatasetWriter(datasetFile, firstReleaseId, labels, metrics, Settings.getPipelineQueue());
+                try(writer) {
+                    FeatureCalculator.computeFeatures(context, EnumSet.allOf(Feature.class), firstReleaseId, authorHistory, writer);
+                    writer.finish();
+                }
+                metrics.add("rows", writer.getRows());
+                LOGGER.log(Level.INFO, "{0} rows written to {1}", new Object[] {writer.getRows(), datasetFile});
+            } finally {
+                /* Se il progetto è fallito il labeling ancora in corso viene interrotto; dopo il successo le label sono già complete */
+                labels.cancel(true);
+                labelingExecutor.shutdownNow();
+            }
+            Metrics.Stage cachesStage = metrics.stage("caches");
+            try {
+                diffCache.save();
+                blobCache.save();
+            } finally {
+                cachesStage.stop();
+            }
+            if(Settings.isIncremental()) {
+                new IncrementalState(releaseKeeper.getTagFromId(lastReleaseId).getTagName(), lastReleaseId, Arrays.asList(DatasetWriter.HEADER), authorHistory).save(stateFile);
             }
-        }
 
+            if(Settings.isMetricsEnabled()) {
+                metrics.save(new File(project.getName() + "_metrics.json"));
+            }
 
+            for(Tag release: releaseKeeper.getReleaseKeySet()) {
+                LOGGER.log(Level.FINE, ()-> project.getName() + " Release Name: " + release.getTagName() + " Release Date: " + release.getTagDate() + " Release id: " + releaseKeeper.getIdFromTag(release));
+            }
+        }
     }
 }
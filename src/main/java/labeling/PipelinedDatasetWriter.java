@@ -0,0 +1,175 @@
+package labeling;
+
+import features.FeatureTable;
+import features.ReleaseConsumer;
+import logging.Metrics;
+import mydatatype.CompositeKey;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ultimo stadio della pipeline di un progetto: le release con le feature definitive vengono messe in una coda limitata
+ * e scritte da un thread dedicato con un {@link DatasetWriter}. Le label vengono calcolate in parallelo alle feature:
+ * il writer attende il loro completamento solo prima della prima riga, intanto le release calcolate restano in coda.
+ * Quando la coda è piena {@link #accept(Tag, FeatureTable)} si blocca, quindi il calcolo delle feature procede al più
+ * alla velocità della scrittura e in memoria restano al massimo {@link utils.Settings#getPipelineQueue()} release.
+ * Il dataset viene sostituito solo da {@link #finish()}; chiudendo il writer senza averlo finito le release in coda vengono scartate,
+ * il writer viene interrotto anche se sta ancora attendendo le label e il dataset precedente resta intatto.
+ */
+public class PipelinedDatasetWriter implements ReleaseConsumer, Closeable {
+    private static final long POLL_MILLIS = 100;
+    private static final PendingRelease END = new PendingRelease(null, null);
+
+    private final BlockingQueue<PendingRelease> queue;
+    private final Thread thread;
+    private volatile Exception failure;
+    private volatile int rows;
+    private volatile boolean aborted;
+    /* Usati solo dal thread delle feature: l'errore viene rilanciato una sola volta */
+    private boolean reported;
+    private boolean finished;
+
+    /**
+     * @param file file del dataset
+     * @param firstReleaseId id della prima release calcolata, le righe delle release precedenti vengono rietichettate ({@link DatasetWriter})
+     * @param labels label del progetto, calcolate su un altro thread
+     * @param metrics metriche del progetto: tempo delle fasi write e write.waitLabels
+     * @param capacity numero massimo di release in attesa di essere scritte
+     */
+    public PipelinedDatasetWriter(File file, int firstReleaseId, CompletableFuture<Map<CompositeKey, Integer>> labels, Metrics metrics, int capacity) {
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.thread = new Thread(() -> this.write(file, firstReleaseId, labels, metrics), "writer-" + file.getName());
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    private void write(File file, int firstReleaseId, CompletableFuture<Map<CompositeKey, Integer>> labels, Metrics metrics) {
+        try {
+            Map<CompositeKey, Integer> buggyClasses;
+            Metrics.Stage waitStage = metrics.stage("write.waitLabels");
+            try {
+                buggyClasses = labels.get();
+            } finally {
+                waitStage.stop();
+            }
+            try(DatasetWriter writer = new DatasetWriter(file, firstReleaseId, buggyClasses)) {
+                PendingRelease pending;
+                while((pending = this.queue.take()) != END) {
+                    Metrics.Stage writeStage = metrics.stage("write");
+                    try {
+                        writer.accept(pending.release, pending.table);
+                    } finally {
+                        writeStage.stop();
+                    }
+                    this.rows = writer.getRows();
+                }
+                writer.commit();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause() instanceof CompletionException ? e.getCause().getCause() : e.getCause();
+            this.fail(cause instanceof Exception ? (Exception) cause : e);
+        } catch (IOException | RuntimeException e) {
+            this.fail(e);
+        } catch (InterruptedException e) {
+            /* Interruzione di close(): il progetto è già fallito e non c'è niente da segnalare */
+            if(!this.aborted) this.fail(e);
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Registra l'errore e svuota la coda: accept e close attendono a intervalli e controllano l'errore, quindi non restano bloccati
+     */
+    private void fail(Exception e) {
+        this.failure = e;
+        this.queue.clear();
+    }
+
+    /**
+     * Accoda la release per la scrittura, attendendo se la coda è piena
+     * @throws IOException se la scrittura o il calcolo delle label sono falliti, per interrompere il calcolo delle feature
+     */
+    @Override
+    public void accept(Tag release, FeatureTable table) throws IOException {
+        this.checkFailure();
+        try {
+            while(!this.queue.offer(new PendingRelease(release, table), POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                this.checkFailure();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while queueing release " + release.getTagName());
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        Exception e = this.failure;
+        if(e == null || this.reported) return;
+        this.reported = true;
+        if(e instanceof IOException) throw (IOException) e;
+        throw new IOException("Dataset pipeline failed", e);
+    }
+
+    /**
+     * @return Ritorna il numero di righe scritte finora
+     */
+    public int getRows() {
+        return this.rows;
+    }
+
+    /**
+     * Attende che il writer abbia scritto tutte le release accodate e sostituisce il dataset con quello nuovo
+     * @throws IOException se la scrittura o il calcolo delle label sono falliti
+     */
+    public void finish() throws IOException {
+        this.finished = true;
+        try {
+            while(this.thread.isAlive() && !this.queue.offer(END, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                /* Se il writer è terminato per un errore la fine non viene accodata */
+            }
+            this.thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while writing the dataset");
+        }
+        this.checkFailure();
+    }
+
+    /**
+     * Se il writer non è stato finito scarta le release in coda e interrompe il writer, senza attendere le label;
+     * il file temporaneo viene cancellato dal writer prima di terminare
+     */
+    @Override
+    public void close() throws IOException {
+        if(this.finished) return;
+        this.aborted = true;
+        this.queue.clear();
+        this.thread.interrupt();
+        try {
+            this.thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while aborting the dataset writer");
+        }
+    }
+
+    private static class PendingRelease {
+        private final Tag release;
+        private final FeatureTable table;
+
+        private PendingRelease(Tag release, FeatureTable table) {
+            this.release = release;
+            this.table = table;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package labeling;
+
+import logging.Metrics;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import utils.BlobLineCountCache;
+import utils.DiffCache;
+import utils.GitUtils;
+import utils.HistoryBackend;
+import utils.RepositoryAccess;
+
+import java.io.IOException;
+import java.util.regex.Pattern;
+
+/**
+ * Contesto di analisi di un progetto: il repository con i suoi reader, la timeline delle release, il modello di proportion,
+ * l'assegnazione dei commit alle release e le metriche dell'esecuzione.
+ * Viene passato esplicitamente a feature e labeling al posto di stato globale, così che progetti diversi
+ * possano essere elaborati in parallelo su thread separati. La timeline è immutabile, indice dei commit e backend dei diff
+ * sono condivisi tra il calcolo delle feature e il labeling, che girano in parallelo; il modello di proportion appartiene
+ * al thread del labeling fino al completamento delle label. Il contesto tiene acquisite le cache su disco del repository
+ * ({@link DiffCache} e {@link BlobLineCountCache}), che vengono tolte dalla memoria quando l'ultimo progetto che le usa viene chiuso. Va chiuso a fine progetto per rilasciare i reader del repository.
+ */
+public class ProjectContext implements AutoCloseable {
+    /** Numero minimo di release della timeline di un progetto */
+    private static final int MIN_RELEASES = 2;
+
+    private final String projectName;
+    private final Git git;
+    private final ReleaseKeeper releaseKeeper;
+    private final ProportionLabeling proportionLabeling;
+    private final Metrics metrics;
+    private final RepositoryAccess repositoryAccess;
+    private ReleaseCommitIndex commitIndex;
+    private HistoryBackend historyBackend;
+
+    public ProjectContext(String projectName, Git git, ReleaseKeeper releaseKeeper) {
+        this(projectName, git, releaseKeeper, new Metrics(projectName));
+    }
+
+    public ProjectContext(String projectName, Git git, ReleaseKeeper releaseKeeper, Metrics metrics) {
+        this.projectName = projectName;
+        this.git = git;
+        this.releaseKeeper = releaseKeeper;
+        this.proportionLabeling = new ProportionLabeling(releaseKeeper);
+        this.metrics = metrics;
+        this.repositoryAccess = new RepositoryAccess(git.getRepository());
+        DiffCache.acquire(git.getRepository());
+        BlobLineCountCache.acquire(git.getRepository());
+    }
+
+    /**
+     * Crea il contesto leggendo la timeline dai tag del repository
+     * @param projectName chiave jira del progetto
+     * @param git repository del progetto
+     */
+    public static ProjectContext open(String projectName, Git git) throws GitAPIException, IOException {
+        return ProjectContext.open(projectName, git, null);
+    }
+
+    /**
+     * Come {@link #open(String, Git)}, ma la timeline contiene solo i tag il cui nome corrisponde a tagPattern
+     * @param tagPattern pattern dei tag di release, null per usare tutti i tag
+     */
+    public static ProjectContext open(String projectName, Git git, Pattern tagPattern) throws GitAPIException, IOException {
+        return ProjectContext.open(projectName, git, tagPattern, false);
+    }
+
+    /**
+     * Come {@link #open(String, Git, Pattern)}; se dropLastTag è true l'ultimo tag in ordine alfabetico tra quelli
+     * che corrispondono a tagPattern non entra nella timeline
+     * @param dropLastTag true per i progetti predefiniti di {@link Project}, vedi {@link ProjectSpec#isDropLastTag()}
+     * @throws IOException se la timeline ha meno di {@link #MIN_RELEASES} release
+     */
+    public static ProjectContext open(String projectName, Git git, Pattern tagPattern, boolean dropLastTag) throws GitAPIException, IOException {
+        Metrics metrics = new Metrics(projectName);
+        ReleaseKeeper releaseKeeper;
+        Metrics.Stage tagsStage = metrics.stage("tags");
+        try {
+            releaseKeeper = new ReleaseKeeper(GitUtils.getReleaseDate(git, tagPattern, dropLastTag));
+        } finally {
+            tagsStage.stop();
+        }
+        /* Con meno di due release non c'è una release successiva a cui assegnare opening e fixed version dei ticket */
+        int releases = releaseKeeper.getReleaseMap().size();
+        if(releases < MIN_RELEASES) {
+            throw new IOException(projectName + ": " + releases + " release tags in " + git.getRepository().getDirectory()
+                    + (tagPattern != null ? " matching " + tagPattern.pattern() : "") + ", at least " + MIN_RELEASES + " are needed");
+        }
+        return new ProjectContext(projectName, git, releaseKeeper, metrics);
+    }
+
+    public String getProjectName() {
+        return projectName;
+    }
+
+    public Git getGit() {
+        return git;
+    }
+
+    public ReleaseKeeper getReleaseKeeper() {
+        return releaseKeeper;
+    }
+
+    public ProportionLabeling getProportionLabeling() {
+        return proportionLabeling;
+    }
+
+    public Metrics getMetrics() {
+        return metrics;
+    }
+
+    public RepositoryAccess getRepositoryAccess() {
+        return repositoryAccess;
+    }
+
+    /**
+     * @return Ritorna l'assegnazione dei commit alle release, calcolata con una sola visita al primo utilizzo e poi condivisa
+     * da feature e labeling
+     * @throws IOException
+     */
+    public synchronized ReleaseCommitIndex getCommitIndex() throws IOException {
+        if(this.commitIndex == null) {
+            Metrics.Stage indexStage = this.metrics.stage("commitIndex");
+            try {
+                this.commitIndex = ReleaseCommitIndex.build(this.git.getRepository(), this.repositoryAccess.getReader(), this.releaseKeeper);
+            } finally {
+                indexStage.stop();
+            }
+        }
+        return this.commitIndex;
+    }
+
+    /**
+     * @return Ritorna il backend da cui leggere i diff, creato al primo utilizzo. Se il backend lavora in blocco
+     * gli vengono fatti preparare i diff della storia dei tag e di HEAD, solo se qualche commit non è già nella {@link DiffCache}
+     * @throws IOException
+     */
+    public synchronized HistoryBackend getHistoryBackend() throws IOException {
+        if(this.historyBackend == null) {
+            HistoryBackend backend = HistoryBackend.create(this.repositoryAccess, this.metrics);
+            ReleaseCommitIndex index = this.getCommitIndex();
+            DiffCache diffCache = DiffCache.getInstance(this.git.getRepository());
+            try {
+                for(int i = 0; i < index.size(); i++) {
+                    if(!index.isRoot(i) && !diffCache.contains(index.getCommit(i))) {
+                        Metrics.Stage prefetchStage = this.metrics.stage("diffs.prefetch");
+                        try {
+                            backend.prefetch(index.getTips());
+                        } finally {
+                            prefetchStage.stop();
+                        }
+                        break;
+                    }
+                }
+            } catch (IOException e) {
+                backend.close();
+                throw e;
+            }
+            this.historyBackend = backend;
+        }
+        return this.historyBackend;
+    }
+
+    @Override
+    public void close() {
+        if(this.historyBackend != null) {
+            this.historyBackend.close();
+        }
+        this.repositoryAccess.close();
+        DiffCache.release(this.git.getRepository());
+        BlobLineCountCache.release(this.git.getRepository());
+    }
+}
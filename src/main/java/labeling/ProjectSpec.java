@@ -0,0 +1,117 @@
+package labeling;
+
+import com.opencsv.CSVReader;
+import com.opencsv.exceptions.CsvException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Descrive un progetto da elaborare: nome usato per i file di output, repository locale, chiave jira
+ * e pattern dei tag che rappresentano le release (null per usare tutti i tag).
+ * Solo per i progetti predefiniti di {@link Project} l'ultimo tag in ordine alfabetico viene scartato, perché non è una release.
+ */
+public class ProjectSpec {
+    private static final String[] MANIFEST_HEADER = {"name", "path", "jiraKey", "tagPattern"};
+
+    private final String name;
+    private final File repository;
+    private final String jiraKey;
+    private final Pattern tagPattern;
+    private final boolean dropLastTag;
+
+    public ProjectSpec(String name, File repository, String jiraKey, Pattern tagPattern) {
+        this(name, repository, jiraKey, tagPattern, false);
+    }
+
+    private ProjectSpec(String name, File repository, String jiraKey, Pattern tagPattern, boolean dropLastTag) {
+        this.name = name;
+        this.repository = repository;
+        this.jiraKey = jiraKey;
+        this.tagPattern = tagPattern;
+        this.dropLastTag = dropLastTag;
+    }
+
+    /**
+     * @return Ritorna la descrizione di uno dei progetti predefiniti, clonato nella cartella con il suo nome
+     */
+    public static ProjectSpec of(Project project) {
+        return new ProjectSpec(project.label, new File(project.label), project.label.toUpperCase(), null, true);
+    }
+
+    /**
+     * Legge il manifest dei progetti: un csv con header name,path,jiraKey,tagPattern e una riga per progetto.
+     * Il path può essere la cartella del repository o la sua cartella .git, relativo alla cartella del manifest;
+     * se jiraKey è vuota viene usato il nome in maiuscolo, se tagPattern è vuoto vengono usati tutti i tag.
+     * @param manifest file csv
+     * @return Ritorna i progetti nell'ordine del manifest
+     * @throws IOException se il file non è leggibile o una riga non è valida
+     */
+    public static List<ProjectSpec> readManifest(File manifest) throws IOException {
+        List<String[]> rows;
+        try(CSVReader reader = new CSVReader(new BufferedReader(new InputStreamReader(new FileInputStream(manifest), StandardCharsets.UTF_8)))) {
+            rows = reader.readAll();
+        } catch (CsvException e) {
+            throw new IOException("Invalid manifest " + manifest, e);
+        }
+        List<ProjectSpec> projects = new ArrayList<>();
+        File baseDir = manifest.getAbsoluteFile().getParentFile();
+        for(int i = 0; i < rows.size(); i++) {
+            String[] row = rows.get(i);
+            if(row.length == 0 || (row.length == 1 && row[0].trim().isEmpty())) continue;
+            if(i == 0 && row[0].trim().equalsIgnoreCase(MANIFEST_HEADER[0])) continue;
+            projects.add(ProjectSpec.fromRow(row, baseDir, manifest, i + 1));
+        }
+        return projects;
+    }
+
+    private static ProjectSpec fromRow(String[] row, File baseDir, File manifest, int line) throws IOException {
+        if(row.length < 2 || row[0].trim().isEmpty() || row[1].trim().isEmpty()) {
+            throw new IOException(manifest + ":" + line + ": expected " + String.join(",", MANIFEST_HEADER));
+        }
+        String name = row[0].trim();
+        File path = new File(row[1].trim());
+        if(!path.isAbsolute()) {
+            path = new File(baseDir, row[1].trim());
+        }
+        String jiraKey = row.length > 2 && !row[2].trim().isEmpty() ? row[2].trim() : name.toUpperCase();
+        Pattern tagPattern = null;
+        if(row.length > 3 && !row[3].trim().isEmpty()) {
+            try {
+                tagPattern = Pattern.compile(row[3].trim());
+            } catch (PatternSyntaxException e) {
+                throw new IOException(manifest + ":" + line + ": invalid tag pattern " + row[3].trim(), e);
+            }
+        }
+        return new ProjectSpec(name, path, jiraKey, tagPattern);
+    }
+
+    @Override
+    public String toString() {
+        return this.name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public File getRepository() {
+        return repository;
+    }
+
+    public String getJiraKey() {
+        return jiraKey;
+    }
+
+    public Pattern getTagPattern() {
+        return tagPattern;
+    }
+
+    public boolean isDropLastTag() {
+        return dropLastTag;
+    }
+}
@@ -3,10 +3,6 @@ package labeling;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.json.JSONArray;
-import org.json.JSONObject;
-import utils.GitUtils;
-import utils.MapUtils;
-import utils.ParseUtils;
 
 import java.io.IOException;
 import java.text.ParseException;
@@ -14,24 +10,29 @@ import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+/**
+ * Modello di proportion di un progetto: i valori di P per fixed version e la media incrementale usata per calcolarli.
+ * Ogni progetto ha il proprio modello, legato alla sua timeline; non è thread-safe e va usato da un thread alla volta.
+ */
 public class ProportionLabeling {
     private static final Logger LOGGER = Logger.getLogger(ProportionLabeling.class.getName());
+    private final ReleaseKeeper releaseKeeper;
     private final LinkedHashMap<Tag, Integer> pValue;
+    private int[] pIndex;
 
-    private static ProportionLabeling instance = null;
-
-    private ProportionLabeling () {
-        pValue = new LinkedHashMap<>();
+    public ProportionLabeling(ReleaseKeeper releaseKeeper) {
+        this.releaseKeeper = releaseKeeper;
+        this.pValue = new LinkedHashMap<>();
     }
 
-    public static ProportionLabeling getInstance() {
-        if(instance == null) {
-            instance = new ProportionLabeling();
-        }
-        return instance;
+    public void incrementalProportion(Git git, JSONArray issues) throws GitAPIException, IOException, ParseException {
+        this.incrementalProportion(git, Ticket.fromJson(issues, this.releaseKeeper));
     }
 
-    public void incrementalProportion(Git git, JSONArray issues) throws GitAPIException, IOException, ParseException {
+    /**
+     * Come {@link #incrementalProportion(Git, JSONArray)}, sui ticket già interpretati
+     */
+    public void incrementalProportion(Git git, List<Ticket> tickets) {
         /* Per ogni issue(bug fixato) ho la lista delle affected version (se presenti), la data di creazione del ticket e la data di risoluzione
            Tramite le affected version posso risalire all'Injected Version (Affected Version più vecchia)
            Tramite la data di creazione del ticket posso risalire all'Opening version
@@ -40,28 +41,21 @@ public class ProportionLabeling {
            Alla fine faccio la media per ogni versione */
 
         Map<Tag, List<Integer>> pMap = new LinkedHashMap<>();
-        Map<Tag, Integer> release = GitUtils.getReleaseDate(git);
+        Map<Tag, Integer> release = this.releaseKeeper.getReleaseMap();
         Set<Tag> keySet = release.keySet();
         for(Tag key : keySet) {
             List<Integer> pValues = new ArrayList<>();
             pMap.put(key, pValues);
         }
-        for (int i = 0; i < issues.length(); i++) {
-            JSONObject issue = issues.getJSONObject(i);
-            JSONObject fields = issue.getJSONObject("fields");
-            JSONArray versions = fields.getJSONArray("versions");
-            String resolutionDate = fields.get("resolutiondate").toString();
-            String created =  fields.get("created").toString();
-            if(versions.length() == 0) continue;
-            Date resDate = ParseUtils.convertToDate(resolutionDate);
-            Date creationDate = ParseUtils.convertToDate(created);
-            Integer injectedVersion = ProportionLabeling.getInjectedVersion( versions);
-            Integer openingVersion = ProportionLabeling.getNextVersion(creationDate);
-            Integer fixedVersion = ProportionLabeling.getNextVersion(resDate);
+        for (Ticket ticket : tickets) {
+            if(!ticket.hasAffectedVersions()) continue;
+            int injectedVersion = ticket.getInjectedVersion();
+            int openingVersion = this.getNextVersion(ticket.getCreatedTime());
+            int fixedVersion = this.getNextVersion(ticket.getResolvedTime());
 
             if(injectedVersion < openingVersion && openingVersion < fixedVersion) {
                 Integer p = (fixedVersion - injectedVersion) / (fixedVersion - openingVersion);
-                Tag key = MapUtils.getKeyByValue(release, fixedVersion);
+                Tag key = this.releaseKeeper.getTagFromId(fixedVersion);
                 pMap.get(key).add(p);
             }
 
@@ -79,12 +73,20 @@ public class ProportionLabeling {
                 pValue.put(version, total / bugCounter);
             }
         }
+        pIndex = null;
     }
 
     public Integer computePredictedIV(Git git, Date creationTickedDate, Date fixedTickedDate) {
-        Integer fixedVersion = ProportionLabeling.getNextVersion( fixedTickedDate);
-        Integer openingVersion = ProportionLabeling.getNextVersion(creationTickedDate);
-        Integer p = this.getP(fixedTickedDate);
+        return this.computePredictedIV(creationTickedDate.getTime(), fixedTickedDate.getTime());
+    }
+
+    /**
+     * Come {@link #computePredictedIV(Git, Date, Date)}, con le date in millisecondi
+     */
+    public Integer computePredictedIV(long creationTickedTime, long fixedTickedTime) {
+        Integer fixedVersion = this.getNextVersion(fixedTickedTime);
+        Integer openingVersion = this.getNextVersion(creationTickedTime);
+        Integer p = this.getP(fixedTickedTime);
         int predictedIV;
 
         if(Objects.equals(fixedVersion, openingVersion)) {
@@ -93,51 +95,72 @@ public class ProportionLabeling {
         else {
             predictedIV = (fixedVersion - (fixedVersion - openingVersion) * p);
         }
-        LOGGER.log(Level.INFO, () -> "Opening Version: " + openingVersion  + " Fixed Version: " + fixedVersion + " PredictedIV: " + predictedIV);
+        LOGGER.log(Level.FINE, () -> "Opening Version: " + openingVersion  + " Fixed Version: " + fixedVersion + " PredictedIV: " + predictedIV);
         return predictedIV;
     }
 
+    /**
+     * Ritorna il valore di P della prima release, tra quelle per cui P è stato calcolato, con data uguale o successiva a revisionDate.
+     * La release viene trovata con una ricerca binaria sulla timeline e P con l'indice costruito da {@link #getPIndex()}.
+     */
     public Integer getP(Date revisionDate) {
-        Set<Tag> tagSet = pValue.keySet();
-        for(Tag tag: tagSet) {
-            if(revisionDate.after(tag.getTagDate())) {
-                continue;
+        return this.getP(revisionDate.getTime());
+    }
+
+    public Integer getP(long revisionTime) {
+        Integer releaseId = this.releaseKeeper.getFirstReleaseIdNotBefore(revisionTime);
+        if(releaseId == null) return 1;
+        return this.getPIndex()[releaseId];
+    }
+
+    /**
+     * @return Ritorna un array che per ogni id di release contiene il P della prima release, a partire da essa, per cui P è stato calcolato
+     * (1 se non esiste). Viene ricostruito solo quando i valori di P cambiano.
+     */
+    private int[] getPIndex() {
+        if(pIndex == null) {
+            ReleaseKeeper releaseKeeper = this.releaseKeeper;
+            int[] index = new int[releaseKeeper.getReleaseMap().size() + 2];
+            int current = 1;
+            for(int id = index.length - 1; id >= 0; id--) {
+                Integer p = pValue.get(releaseKeeper.getTagFromId(id));
+                if(p != null) {
+                    current = p;
+                }
+                index[id] = current;
             }
-            return pValue.get(tag);
+            pIndex = index;
         }
-        return 1;
+        return pIndex;
     }
 
 
-    public static Integer getInjectedVersion(JSONArray affectedVersions) {
+    public static Integer getInjectedVersion(ReleaseKeeper releaseKeeper, JSONArray affectedVersions) {
         /* L'injected versione è la affected version più vecchia */
         Integer injectedVersion = Integer.MAX_VALUE;
 
         for(int i = 0; i <affectedVersions.length(); i++) {
-
             String affectedVersion = affectedVersions.getJSONObject(i).get("name").toString();
-            for(Tag key : ReleaseKeeper.getInstance().getReleaseKeySet()) {
-                if(key.getTagName().contains(affectedVersion) && ReleaseKeeper.getInstance().getIdFromTag(key) < injectedVersion) {
-                    injectedVersion = ReleaseKeeper.getInstance().getIdFromTag(key);
-                }
+            Integer releaseId = releaseKeeper.getFirstIdContaining(affectedVersion);
+            if(releaseId != null && releaseId < injectedVersion) {
+                injectedVersion = releaseId;
             }
-
         }
 
         return injectedVersion;
     }
 
-    public static Integer getNextVersion(Date tickedDate) {
-        Integer nextVersion = ReleaseKeeper.getInstance().getReleaseMap().entrySet().iterator().next().getValue();
-        /* La opening version la trovo controllando quale versione viene subito dopo la creazione del ticket */
+    public Integer getNextVersion(Date tickedDate) {
+        return this.getNextVersion(tickedDate.getTime());
+    }
 
-        for(Tag tag: ReleaseKeeper.getInstance().getReleaseKeySet()) {
-            if(tag.getTagDate().after(tickedDate)) {
-                nextVersion = ReleaseKeeper.getInstance().getIdFromTag(tag);
-                break;
-            }
+    public Integer getNextVersion(long tickedTime) {
+        /* La opening version la trovo controllando quale versione viene subito dopo la creazione del ticket,
+           se non esiste uso la prima release */
+        Integer nextVersion = this.releaseKeeper.getNextReleaseId(tickedTime);
+        if(nextVersion == null) {
+            nextVersion = this.releaseKeeper.getReleaseMap().entrySet().iterator().next().getValue();
         }
-
         return nextVersion;
     }
 
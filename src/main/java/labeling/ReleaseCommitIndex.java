@@ -0,0 +1,295 @@
+package labeling;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+import utils.GitUtils;
+import utils.StringConstant;
+
+import java.io.IOException;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Assegna i commit alle release con un solo RevWalk topologico su tutta la storia, invece di un git log per ogni range.
+ * Il range della release k contiene i commit raggiungibili dal tag k+1 e non dal tag k, come {@code git log tag_k..tag_k+1}.
+ *
+ * Durante la visita ogni commit porta l'insieme dei tag da cui è raggiungibile, propagato dai figli ai padri:
+ * l'ordine topologico garantisce che l'insieme sia completo quando il commit viene visitato, quindi la visita costa O(commit)
+ * (per tag in blocchi da 64). I commit vengono poi raggruppati per release in slice contigue di un unico array.
+ * Vengono conservati solo gli id dei commit, che chi li usa rilegge con il proprio RevWalk.
+ */
+public class ReleaseCommitIndex {
+    private static final Logger LOGGER = Logger.getLogger(ReleaseCommitIndex.class.getName());
+    private static final int[] NO_RELEASES = new int[0];
+
+    private final ObjectId[] commits;
+    private final int[] releaseIds;
+    private final BitSet history;
+    private final int[] sliceCommits;
+    private final int[] sliceStart;
+    private final ObjectId[] heads;
+    private final BitSet roots;
+    private final List<ObjectId> tips;
+
+    private ReleaseCommitIndex(ObjectId[] commits, int[] releaseIds, BitSet history, int[] sliceCommits, int[] sliceStart, ObjectId[] heads, BitSet roots, List<ObjectId> tips) {
+        this.commits = commits;
+        this.releaseIds = releaseIds;
+        this.history = history;
+        this.sliceCommits = sliceCommits;
+        this.sliceStart = sliceStart;
+        this.heads = heads;
+        this.roots = roots;
+        this.tips = tips;
+    }
+
+    /**
+     * Costruisce l'indice percorrendo una sola volta i commit raggiungibili dai tag della timeline e da HEAD
+     * @param repository repository del progetto
+     * @param reader reader con cui leggere i commit, non viene chiuso
+     * @param releaseKeeper timeline del progetto
+     * @throws IOException
+     */
+    public static ReleaseCommitIndex build(Repository repository, ObjectReader reader, ReleaseKeeper releaseKeeper) throws IOException {
+        int tags = releaseKeeper.getReleaseMap().size();
+        /* Un bit per tag (bit i -> release i + 1) più uno per HEAD */
+        int headBit = tags;
+        int words = (tags + 1 + 63) / 64;
+        ObjectId[] heads = new ObjectId[tags + 1];
+        List<ObjectId> visited = new ArrayList<>();
+        List<int[]> memberships = new ArrayList<>();
+        BitSet history = new BitSet();
+        BitSet roots = new BitSet();
+        List<ObjectId> tips = new ArrayList<>();
+        int[] sliceSizes = new int[tags + 1];
+
+        try(ReachWalk revWalk = new ReachWalk(reader)) {
+            revWalk.setRetainBody(false);
+            for(int releaseId = 1; releaseId <= tags; releaseId++) {
+                Tag tag = releaseKeeper.getTagFromId(releaseId);
+                Ref ref = repository.exactRef(StringConstant.REFS_TAGS + tag.getTagName());
+                ReachCommit commit = (ReachCommit) revWalk.parseCommit(GitUtils.getObjectIdFromRef(ref));
+                commit.mark(releaseId - 1, words);
+                revWalk.markStart(commit);
+                /* La head della release k è il commit del tag k + 1 */
+                heads[releaseId - 1] = commit.copy();
+                tips.add(heads[releaseId - 1]);
+            }
+            ObjectId headId = repository.resolve(Constants.HEAD);
+            if(headId != null) {
+                ReachCommit commit = (ReachCommit) revWalk.parseCommit(headId);
+                commit.mark(headBit, words);
+                revWalk.markStart(commit);
+                tips.add(commit.copy());
+            }
+            revWalk.sort(RevSort.TOPO);
+            revWalk.sort(RevSort.COMMIT_TIME_DESC, true);
+
+            for(RevCommit next : revWalk) {
+                ReachCommit commit = (ReachCommit) next;
+                long[] reach = commit.reach;
+                for(RevCommit parent : commit.getParents()) {
+                    ((ReachCommit) parent).merge(reach);
+                }
+                int[] releases = ReleaseCommitIndex.getReleases(reach, tags);
+                for(int releaseId : releases) {
+                    sliceSizes[releaseId]++;
+                }
+                if(ReleaseCommitIndex.isSet(reach, headBit)) {
+                    history.set(visited.size());
+                }
+                if(commit.getParentCount() == 0) {
+                    roots.set(visited.size());
+                }
+                visited.add(commit.copy());
+                memberships.add(releases);
+                /* L'insieme dei tag non serve più: i padri l'hanno già ricevuto */
+                commit.reach = null;
+            }
+        }
+
+        /* Raggruppo i commit per release mantenendo l'ordine della visita (counting sort) */
+        int[] sliceStart = new int[tags + 2];
+        for(int releaseId = 1; releaseId <= tags; releaseId++) {
+            sliceStart[releaseId + 1] = sliceStart[releaseId] + sliceSizes[releaseId];
+        }
+        int[] sliceCommits = new int[sliceStart[tags + 1]];
+        int[] position = sliceStart.clone();
+        int[] releaseIds = new int[visited.size()];
+        for(int i = 0; i < visited.size(); i++) {
+            int[] releases = memberships.get(i);
+            for(int releaseId : releases) {
+                sliceCommits[position[releaseId]++] = i;
+            }
+            releaseIds[i] = releases.length > 0 ? releases[0] : 0;
+        }
+        ObjectId[] commits = visited.toArray(new ObjectId[0]);
+        LOGGER.log(Level.INFO, () -> "Assigned " + commits.length + " commits to " + Math.max(0, tags - 1) + " releases");
+        return new ReleaseCommitIndex(commits, releaseIds, history, sliceCommits, sliceStart, heads, roots, tips);
+    }
+
+    /**
+     * @return Ritorna le release del commit: quelle k per cui il commit è raggiungibile dal tag k + 1 e non dal tag k.
+     * I bit k con il bit k - 1 spento vengono trovati a blocchi di 64, quindi il costo non dipende dal numero di tag.
+     */
+    private static int[] getReleases(long[] reach, int tags) {
+        int count = 0;
+        for(int word = 0; word < reach.length; word++) {
+            count += Long.bitCount(ReleaseCommitIndex.getStarts(reach, word, tags));
+        }
+        if(count == 0) return NO_RELEASES;
+        int[] releases = new int[count];
+        int index = 0;
+        for(int word = 0; word < reach.length; word++) {
+            long starts = ReleaseCommitIndex.getStarts(reach, word, tags);
+            while(starts != 0) {
+                releases[index++] = (word << 6) + Long.numberOfTrailingZeros(starts);
+                starts &= starts - 1;
+            }
+        }
+        return releases;
+    }
+
+    /**
+     * @return Ritorna i bit della parola che sono accesi con il bit precedente spento, limitati ai primi tags bit
+     */
+    private static long getStarts(long[] reach, int word, int tags) {
+        int limit = tags - (word << 6);
+        if(limit <= 0) return 0;
+        long previous = word > 0 ? reach[word - 1] >>> 63 : 1L;
+        long starts = reach[word] & ~((reach[word] << 1) | previous);
+        return limit >= 64 ? starts : starts & ((1L << limit) - 1);
+    }
+
+    private static boolean isSet(long[] reach, int bit) {
+        return (reach[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    /**
+     * @return Ritorna i commit della release nell'ordine topologico della visita (dal più recente),
+     * null se la release non ha una release successiva
+     */
+    public List<ObjectId> getCommits(int releaseId) {
+        if(releaseId < 1 || releaseId >= this.heads.length - 1) return null;
+        int from = this.sliceStart[releaseId];
+        int to = this.sliceStart[releaseId + 1];
+        return new AbstractList<ObjectId>() {
+            @Override
+            public ObjectId get(int index) {
+                if(index < 0 || index >= to - from) throw new IndexOutOfBoundsException(index);
+                return ReleaseCommitIndex.this.commits[ReleaseCommitIndex.this.sliceCommits[from + index]];
+            }
+
+            @Override
+            public int size() {
+                return to - from;
+            }
+        };
+    }
+
+    /**
+     * @return Ritorna il commit del tag che chiude la release, null se la release non ha una release successiva
+     */
+    public ObjectId getHead(int releaseId) {
+        if(releaseId < 1 || releaseId >= this.heads.length - 1) return null;
+        return this.heads[releaseId];
+    }
+
+    /**
+     * @return Ritorna i commit raggiungibili da HEAD in ordine topologico (dal più recente)
+     */
+    public List<ObjectId> getHistory() {
+        List<ObjectId> result = new ArrayList<>(this.history.cardinality());
+        for(int i = this.history.nextSetBit(0); i >= 0; i = this.history.nextSetBit(i + 1)) {
+            result.add(this.commits[i]);
+        }
+        return result;
+    }
+
+    /**
+     * @return Ritorna la prima release che contiene il commit in posizione index della visita, 0 se il commit non è in nessuna release
+     */
+    public int getReleaseId(int index) {
+        return this.releaseIds[index];
+    }
+
+    /**
+     * @return Ritorna il commit in posizione index della visita
+     */
+    public ObjectId getCommit(int index) {
+        return this.commits[index];
+    }
+
+    /**
+     * @return Ritorna true se il commit in posizione index della visita non ha padri
+     */
+    public boolean isRoot(int index) {
+        return this.roots.get(index);
+    }
+
+    /**
+     * @return Ritorna i commit da cui è partita la visita: i commit dei tag della timeline e HEAD
+     */
+    public List<ObjectId> getTips() {
+        return Collections.unmodifiableList(this.tips);
+    }
+
+    /**
+     * @return Ritorna il numero di commit visitati
+     */
+    public int size() {
+        return this.commits.length;
+    }
+
+    /**
+     * RevWalk che crea commit in grado di portare l'insieme dei tag da cui sono raggiungibili
+     */
+    private static class ReachWalk extends RevWalk {
+        private ReachWalk(ObjectReader reader) {
+            super(reader);
+        }
+
+        @Override
+        protected RevCommit createCommit(AnyObjectId id) {
+            return new ReachCommit(id);
+        }
+    }
+
+    /* ObjectId è Serializable, ma i commit della visita non vengono mai serializzati */
+    @SuppressWarnings("serial")
+    private static class ReachCommit extends RevCommit {
+        private long[] reach;
+
+        private ReachCommit(AnyObjectId id) {
+            super(id);
+        }
+
+        private void mark(int bit, int words) {
+            if(this.reach == null) {
+                this.reach = new long[words];
+            }
+            this.reach[bit >>> 6] |= 1L << bit;
+        }
+
+        private void merge(long[] childReach) {
+            if(this.reach == null) {
+                this.reach = childReach.clone();
+                return;
+            }
+            for(int i = 0; i < childReach.length; i++) {
+                this.reach[i] |= childReach[i];
+            }
+        }
+    }
+}
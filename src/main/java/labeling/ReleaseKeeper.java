@@ -1,25 +1,48 @@
 package labeling;
 
-import utils.MapUtils;
-
-import java.util.Map;
-import java.util.Set;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
+/**
+ * Timeline delle release di un progetto. Oltre alla mappa tag -> id tiene degli indici immutabili costruiti dal costruttore:
+ * un array id -> tag, una mappa nome -> id e l'array ordinato delle date dei tag, così che le ricerche per id e per nome
+ * costino O(1) e quelle per data O(log n).
+ * Non viene mai modificata dopo la costruzione, quindi può essere letta da più thread.
+ */
 public class ReleaseKeeper {
-    private Map<Tag, Integer> releaseMap;
-    private static ReleaseKeeper instance = null;
-
-    private ReleaseKeeper() {    }
+    private final Map<Tag, Integer> releaseMap;
+    private final Tag[] tagsById;
+    private final Map<String, Integer> idsByName;
+    private final long[] tagDates;
+    private final int[] idsByDate;
+    private final Map<String, Integer> idsContaining = new ConcurrentHashMap<>();
 
-    public static ReleaseKeeper getInstance() {
-        if(instance == null) {
-            instance = new ReleaseKeeper();
+    /**
+     * Crea la timeline condivisa da feature, labeling e proportion di un progetto.
+     * Le release devono essere in ordine di data, come quelle ritornate da {@link utils.GitUtils#getReleaseDate}.
+     */
+    public ReleaseKeeper(Map<Tag, Integer> releaseMap) {
+        this.releaseMap = Collections.unmodifiableMap(new LinkedHashMap<>(releaseMap));
+        int maxId = 0;
+        for(Integer id : releaseMap.values()) {
+            maxId = Math.max(maxId, id);
         }
-        return instance;
-    }
-
-    public void setReleaseMap(Map<Tag, Integer> releaseMap) {
-        this.releaseMap = releaseMap;
+        Tag[] tags = new Tag[maxId + 1];
+        Map<String, Integer> names = new HashMap<>();
+        long[] dates = new long[releaseMap.size()];
+        int[] ids = new int[releaseMap.size()];
+        int i = 0;
+        for(Map.Entry<Tag, Integer> entry : releaseMap.entrySet()) {
+            tags[entry.getValue()] = entry.getKey();
+            names.putIfAbsent(entry.getKey().getTagName(), entry.getValue());
+            dates[i] = entry.getKey().getTagDate().getTime();
+            ids[i] = entry.getValue();
+            i++;
+        }
+        this.tagsById = tags;
+        this.idsByName = names;
+        this.tagDates = dates;
+        this.idsByDate = ids;
     }
 
     public Map<Tag,Integer> getReleaseMap() {
@@ -27,7 +50,8 @@ public class ReleaseKeeper {
     }
 
     public Tag getTagFromId(Integer id) {
-        return MapUtils.getKeyByValue(releaseMap, id);
+        if(id == null || id < 0 || id >= this.tagsById.length) return null;
+        return this.tagsById[id];
     }
 
     public Integer getIdFromTag(Tag tag) {
@@ -39,11 +63,63 @@ public class ReleaseKeeper {
     }
 
     public Integer getIdFromTagName(String tagName) {
-        for(Tag tag : this.getReleaseKeySet()) {
-            if(tag.getTagName().equals(tagName)) {
-                return this.getIdFromTag(tag);
+        return this.idsByName.get(tagName);
+    }
+
+    /**
+     * @return Ritorna l'id della prima release con data strettamente successiva a quella passata in input, null se non esiste
+     */
+    public Integer getNextReleaseId(Date date) {
+        return this.getNextReleaseId(date.getTime());
+    }
+
+    public Integer getNextReleaseId(long time) {
+        int index = ReleaseKeeper.firstIndexAfter(this.tagDates, time, false);
+        return index < this.idsByDate.length ? this.idsByDate[index] : null;
+    }
+
+    /**
+     * @return Ritorna l'id della prima release con data uguale o successiva a quella passata in input, null se non esiste
+     */
+    public Integer getFirstReleaseIdNotBefore(Date date) {
+        return this.getFirstReleaseIdNotBefore(date.getTime());
+    }
+
+    public Integer getFirstReleaseIdNotBefore(long time) {
+        int index = ReleaseKeeper.firstIndexAfter(this.tagDates, time, true);
+        return index < this.idsByDate.length ? this.idsByDate[index] : null;
+    }
+
+    /**
+     * @return Ritorna l'id più piccolo tra le release il cui nome contiene la stringa passata in input, null se non esiste.
+     * Il risultato viene messo in cache, dato che le stesse versioni jira vengono cercate per molti ticket
+     */
+    public Integer getFirstIdContaining(String version) {
+        Integer id = this.idsContaining.computeIfAbsent(version, key -> {
+            for(int i = 1; i < this.tagsById.length; i++) {
+                if(this.tagsById[i] != null && this.tagsById[i].getTagName().contains(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        });
+        return id >= 0 ? id : null;
+    }
+
+    /**
+     * Ricerca binaria del primo indice con data maggiore (o maggiore o uguale se inclusive) di time
+     */
+    private static int firstIndexAfter(long[] dates, long time, boolean inclusive) {
+        int low = 0;
+        int high = dates.length;
+        while(low < high) {
+            int mid = (low + high) >>> 1;
+            if(dates[mid] > time || (inclusive && dates[mid] == time)) {
+                high = mid;
+            } else {
+                low = mid + 1;
             }
         }
-        return null;
+        return low;
     }
 }
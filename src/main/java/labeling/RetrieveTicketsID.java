@@ -3,67 +3,121 @@ package labeling;
 import org.json.JSONArray;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.json.JSONTokener;
+import utils.Settings;
 
 import java.io.*;
 import java.net.URL;
-import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.text.ParseException;
+import java.time.Instant;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class RetrieveTicketsID {
+    private static final Logger LOGGER = Logger.getLogger(RetrieveTicketsID.class.getName());
+    private static final int PAGE_SIZE = 1000;
+    /* Lock per file dello store: i progetti del manifest con la stessa chiave jira girano in parallelo sullo stesso store */
+    private static final Map<String, Object> STORE_LOCKS = new ConcurrentHashMap<>();
+
     private RetrieveTicketsID(){}
-    private static String readAll(Reader rd) throws IOException {
-        StringBuilder sb = new StringBuilder();
-        int cp;
-        while ((cp = rd.read()) != -1) {
-            sb.append((char) cp);
-        }
-        return sb.toString();
-    }
 
     public static JSONArray readJsonArrayFromUrl(String url) throws IOException, JSONException {
-        InputStream is = new URL(url).openStream();
-        try {
-            BufferedReader rd = new BufferedReader(new InputStreamReader(is, Charset.forName("UTF-8")));
-            String jsonText = readAll(rd);
-            return new JSONArray(jsonText);
-        } finally {
-            is.close();
+        try(Reader rd = new BufferedReader(new InputStreamReader(new URL(url).openStream(), StandardCharsets.UTF_8))) {
+            return new JSONArray(new JSONTokener(rd));
         }
     }
 
     public static JSONObject readJsonFromUrl(String url) throws IOException, JSONException {
-        InputStream is = new URL(url).openStream();
-        try {
-            BufferedReader rd = new BufferedReader(new InputStreamReader(is, Charset.forName("UTF-8")));
-            String jsonText = readAll(rd);
-            return new JSONObject(jsonText);
-        } finally {
-            is.close();
+        try(Reader rd = new BufferedReader(new InputStreamReader(new URL(url).openStream(), StandardCharsets.UTF_8))) {
+            return new JSONObject(new JSONTokener(rd));
         }
     }
 
+    /**
+     * Ritorna i bug chiusi e fixati del progetto. I ticket vengono letti dallo store locale &lt;progetto&gt;_tickets.jsonl
+     * e aggiornati scaricando da jira solo quelli modificati dopo l'ultimo scaricamento riuscito ({@link TicketFetcher}):
+     * i ticket modificati che non sono più bug chiusi e fixati, ad esempio perché riaperti, vengono tolti dallo store;
+     * in modalità offline ({@link Settings#isJiraOffline()}) jira non viene contattato.
+     * Lettura, aggiornamento e salvataggio dello store di una chiave jira avvengono un progetto alla volta.
+     * @param projName chiave jira del progetto
+     * @return Ritorna un JSONArray con un JSONObject per ticket
+     * @throws IOException
+     */
     public static JSONArray retrieveTicketIDs(String projName) throws IOException {
         JSONArray allIssues = new JSONArray();
+        for(JSONObject issue : RetrieveTicketsID.loadIssues(projName)) {
+            allIssues.put(issue);
+        }
+        return allIssues;
+    }
+
+    /**
+     * Come {@link #retrieveTicketIDs(String)}, ma ogni ticket viene interpretato una sola volta in un {@link Ticket}.
+     * @param projName chiave jira del progetto
+     * @param releaseKeeper timeline del progetto, usata per risolvere le affected version
+     * @return Ritorna i ticket nell'ordine dello store
+     * @throws ParseException se un ticket ha una data non valida
+     */
+    public static List<Ticket> retrieveTickets(String projName, ReleaseKeeper releaseKeeper) throws IOException, ParseException {
+        Collection<JSONObject> issues = RetrieveTicketsID.loadIssues(projName);
+        List<Ticket> tickets = new ArrayList<>(issues.size());
+        for(JSONObject issue : issues) {
+            tickets.add(Ticket.fromJson(issue, releaseKeeper));
+        }
+        return tickets;
+    }
+
+    private static Collection<JSONObject> loadIssues(String projName) throws IOException {
+        File storeFile = new File(projName.toLowerCase() + "_tickets.jsonl").getAbsoluteFile();
+        synchronized(STORE_LOCKS.computeIfAbsent(storeFile.getPath(), path -> new Object())) {
+            return RetrieveTicketsID.loadIssues(projName, new TicketStore(storeFile));
+        }
+    }
+
+    private static Collection<JSONObject> loadIssues(String projName, TicketStore store) throws IOException {
+        Map<String, JSONObject> tickets = Settings.isTicketStoreEnabled() ? store.load() : new LinkedHashMap<>();
 
-        int j;
-        int i = 0;
-        int total;
-        //Get JSON API for closed bugs w/ AV in the project
-        do {
-            //Only gets a max of 1000 at a time, so must do this multiple times if bugs >1000
-            j = i + 1000;
-            String url = "https://issues.apache.org/jira/rest/api/2/search?jql=project=%22"
-                    + projName + "%22AND%22issueType%22=%22Bug%22AND(%22status%22=%22closed%22OR"
-                    + "%22status%22=%22resolved%22)AND%22resolution%22=%22fixed%22&fields=key,resolutiondate,versions,created&startAt="
-                    + i + "&maxResults=" + j;
-            JSONObject json = readJsonFromUrl(url);
-            JSONArray issues = json.getJSONArray("issues");
-            total = json.getInt("total");
-            for (; i < total && i < j; i++) {
-                //Iterate through each bug
-                allIssues.put(issues.getJSONObject(i%1000));
+        if(Settings.isJiraOffline()) {
+            if(tickets.isEmpty()) {
+                LOGGER.log(Level.WARNING, "Offline mode and no stored tickets for {0}", projName);
             }
-        } while (i < total);
-        return allIssues;
+        } else {
+            TicketFetcher fetcher = new TicketFetcher(Settings.getJiraUrl(), Settings.getJiraParallelism(), PAGE_SIZE);
+            Instant fetchStart = RetrieveTicketsID.update(projName, tickets, store, fetcher);
+            if(Settings.isTicketStoreEnabled()) {
+                store.save(tickets.values(), fetchStart);
+            }
+        }
+
+        return tickets.values();
+    }
+
+    /**
+     * Aggiorna i ticket letti dallo store con quelli scaricati da fetcher: tutti i bug chiusi e fixati se tickets è vuota,
+     * altrimenti i ticket modificati dall'ultimo scaricamento ({@link TicketStore#getUpdatedSince(Collection)}).
+     * I ticket che non sono più bug chiusi e fixati vengono tolti.
+     * @param tickets ticket letti dallo store, aggiornati sul posto
+     * @return Ritorna l'istante in cui è iniziato lo scaricamento, da salvare nello store come ultimo scaricamento
+     * @throws IOException se lo scaricamento fallisce; in questo caso tickets non viene modificata
+     */
+    static Instant update(String projName, Map<String, JSONObject> tickets, TicketStore store, TicketFetcher fetcher) throws IOException {
+        String updatedSince = tickets.isEmpty() ? null : store.getUpdatedSince(tickets.values());
+        Instant fetchStart = Instant.now();
+        int removed = 0;
+        for(JSONObject issue : fetcher.fetch(projName, updatedSince)) {
+            if(TicketFetcher.isFixedBug(issue)) {
+                tickets.put(issue.getString("key"), issue);
+            } else if(tickets.remove(issue.getString("key")) != null) {
+                removed++;
+            }
+        }
+        if(removed > 0) {
+            LOGGER.log(Level.INFO, "{0}: removed {1} stored tickets that are no longer fixed bugs", new Object[] {projName, removed});
+        }
+        return fetchStart;
     }
 
 }
@@ -0,0 +1,110 @@
+package labeling;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import utils.ParseUtils;
+
+import java.text.ParseException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Bug jira già interpretato: le date sono giorni dal 1970-01-01 e le affected version sono già risolte negli id delle release,
+ * così che labeling e proportion non debbano riparsare il JSON, le date e i nomi delle versioni per ogni ticket.
+ */
+public final class Ticket {
+    private final String key;
+    private final long createdDay;
+    private final long resolvedDay;
+    private final boolean hasAffectedVersions;
+    private final int[] affectedReleaseIds;
+    private final int injectedVersion;
+
+    public Ticket(String key, long createdDay, long resolvedDay, boolean hasAffectedVersions, int[] affectedReleaseIds, int injectedVersion) {
+        this.key = key;
+        this.createdDay = createdDay;
+        this.resolvedDay = resolvedDay;
+        this.hasAffectedVersions = hasAffectedVersions;
+        this.affectedReleaseIds = affectedReleaseIds.clone();
+        this.injectedVersion = injectedVersion;
+    }
+
+    /**
+     * @param issue ticket come restituito dalla ricerca di jira
+     * @param releaseKeeper timeline del progetto del ticket
+     * @return Ritorna il ticket interpretato; le affected version che non corrispondono ad un tag release-&lt;versione&gt; vengono scartate
+     * @throws ParseException se le date non sono nel formato di jira
+     */
+    public static Ticket fromJson(JSONObject issue, ReleaseKeeper releaseKeeper) throws ParseException {
+        JSONObject fields = issue.getJSONObject("fields");
+        JSONArray versions = fields.getJSONArray("versions");
+        int[] ids = new int[versions.length()];
+        int count = 0;
+        for(int i = 0; i < versions.length(); i++) {
+            Integer id = releaseKeeper.getIdFromTagName("release-" + versions.getJSONObject(i).get("name").toString());
+            if(id != null) {
+                ids[count++] = id;
+            }
+        }
+        return new Ticket(issue.get("key").toString(),
+                ParseUtils.toEpochDay(fields.get("created").toString()),
+                ParseUtils.toEpochDay(fields.get("resolutiondate").toString()),
+                versions.length() > 0, Arrays.copyOf(ids, count), ProportionLabeling.getInjectedVersion(releaseKeeper, versions));
+    }
+
+    public static List<Ticket> fromJson(JSONArray issues, ReleaseKeeper releaseKeeper) throws ParseException {
+        List<Ticket> tickets = new ArrayList<>(issues.length());
+        for(int i = 0; i < issues.length(); i++) {
+            tickets.add(Ticket.fromJson(issues.getJSONObject(i), releaseKeeper));
+        }
+        return tickets;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public long getCreatedDay() {
+        return createdDay;
+    }
+
+    public long getResolvedDay() {
+        return resolvedDay;
+    }
+
+    /**
+     * @return millisecondi della mezzanotte locale del giorno di creazione, come le date ritornate da {@link ParseUtils#convertToDate}
+     */
+    public long getCreatedTime() {
+        return ParseUtils.toEpochMillis(this.createdDay);
+    }
+
+    public long getResolvedTime() {
+        return ParseUtils.toEpochMillis(this.resolvedDay);
+    }
+
+    /**
+     * @return true se il ticket riporta delle affected version, anche se nessuna corrisponde ad una release
+     */
+    public boolean hasAffectedVersions() {
+        return hasAffectedVersions;
+    }
+
+    public int[] getAffectedReleaseIds() {
+        return affectedReleaseIds.clone();
+    }
+
+    /**
+     * @return id della release più vecchia il cui nome contiene una delle affected version, Integer.MAX_VALUE se non esiste
+     */
+    public int getInjectedVersion() {
+        return injectedVersion;
+    }
+
+    @Override
+    public String toString() {
+        return this.key + " -> Opened: " + LocalDate.ofEpochDay(this.createdDay) + " Closed: " + LocalDate.ofEpochDay(this.resolvedDay);
+    }
+}
@@ -0,0 +1,138 @@
+package labeling;
+
+import mydatatype.EditSummary;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import utils.HistoryBackend;
+import utils.JGitHistoryBackend;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.*;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Indice dai ticket jira ai commit che li citano. Viene costruito con una sola passata su git log:
+ * dal messaggio di ogni commit vengono estratte le chiavi dei ticket del progetto e per ogni ticket
+ * si tengono le classi valide toccate dai relativi commit, così da rispondere in O(1) invece di riscandire la storia per ogni ticket.
+ */
+public class TicketCommitIndex {
+    private static final Logger LOGGER = Logger.getLogger(TicketCommitIndex.class.getName());
+
+    private final Map<String, List<String>> classesByTicket;
+
+    private TicketCommitIndex(Map<String, List<String>> classesByTicket) {
+        this.classesByTicket = classesByTicket;
+    }
+
+    /**
+     * Costruisce l'indice percorrendo una sola volta tutti i commit raggiungibili da HEAD
+     * @param git
+     * @param projectKey chiave jira del progetto, ad esempio ZOOKEEPER
+     * @return Ritorna l'indice ticket -> classi toccate
+     * @throws GitAPIException
+     * @throws IOException
+     */
+    public static TicketCommitIndex build(Git git, String projectKey) throws GitAPIException, IOException {
+        try(ObjectReader reader = git.getRepository().newObjectReader()) {
+            return TicketCommitIndex.build(git, projectKey, reader);
+        }
+    }
+
+    /**
+     * Come {@link #build(Git, String)}, ma legge i diff con il reader passato in input, che non viene chiuso
+     */
+    public static TicketCommitIndex build(Git git, String projectKey, ObjectReader reader) throws GitAPIException, IOException {
+        try(HistoryBackend backend = new JGitHistoryBackend(git.getRepository(), () -> reader)) {
+            return TicketCommitIndex.build(projectKey, backend, git.log().call());
+        }
+    }
+
+    /**
+     * Come {@link #build(Git, String, ObjectReader)}, ma percorre la storia già calcolata dal {@link ReleaseCommitIndex}
+     * invece di eseguire un nuovo git log e legge i diff dal backend passato in input
+     * @param reader reader con cui leggere i commit, non viene chiuso
+     * @param backend backend dei diff del progetto, non viene chiuso
+     * @param history commit raggiungibili da HEAD, ad esempio {@link ReleaseCommitIndex#getHistory()}
+     */
+    public static TicketCommitIndex build(String projectKey, ObjectReader reader, HistoryBackend backend, List<ObjectId> history) throws IOException {
+        try(RevWalk revWalk = new RevWalk(reader)) {
+            List<RevCommit> commits = new AbstractList<RevCommit>() {
+                @Override
+                public RevCommit get(int index) {
+                    try {
+                        return revWalk.parseCommit(history.get(index));
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+
+                @Override
+                public int size() {
+                    return history.size();
+                }
+            };
+            try {
+                return TicketCommitIndex.build(projectKey, backend, commits);
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    private static TicketCommitIndex build(String projectKey, HistoryBackend backend, Iterable<RevCommit> history) throws IOException {
+        Pattern pattern = TicketCommitIndex.getTicketPattern(projectKey);
+        Map<String, List<String>> classesByTicket = new HashMap<>();
+        int commitCounter = 0;
+        for(RevCommit commit : history) {
+            if(commit.getParentCount() == 0) continue;
+            Set<String> tickets = TicketCommitIndex.extractTicketKeys(pattern, commit.getShortMessage());
+            if(tickets.isEmpty()) continue;
+            commitCounter++;
+            List<EditSummary> summaries = backend.getEditSummaries(commit);
+            for(String ticket : tickets) {
+                List<String> classList = classesByTicket.computeIfAbsent(ticket, key -> new ArrayList<>());
+                for(EditSummary summary : summaries) {
+                    classList.add(summary.getPath());
+                }
+            }
+        }
+        int commits = commitCounter;
+        LOGGER.log(Level.INFO, () -> "Indexed " + classesByTicket.size() + " tickets from " + commits + " commits");
+        return new TicketCommitIndex(classesByTicket);
+    }
+
+    /**
+     * @return Ritorna le classi valide toccate dai commit che citano il ticket, con ripetizioni se più commit toccano la stessa classe
+     */
+    public List<String> getDiffClasses(String ticketID) {
+        return this.classesByTicket.getOrDefault(ticketID, Collections.emptyList());
+    }
+
+    /**
+     * La chiave deve essere seguita dal numero completo del ticket: ZOOKEEPER-12 non viene trovato in ZOOKEEPER-123
+     * e non viene trovato se preceduto da una lettera o una cifra (ad esempio in SUBZOOKEEPER-12)
+     */
+    public static Pattern getTicketPattern(String projectKey) {
+        return Pattern.compile("(?<![A-Za-z0-9])" + Pattern.quote(projectKey) + "-(\\d+)(?!\\d)");
+    }
+
+    /**
+     * @return Ritorna le chiavi dei ticket citati nel messaggio, senza ripetizioni e in ordine di apparizione
+     */
+    public static Set<String> extractTicketKeys(Pattern ticketPattern, String message) {
+        Set<String> tickets = new LinkedHashSet<>();
+        Matcher matcher = ticketPattern.matcher(message);
+        while(matcher.find()) {
+            tickets.add(matcher.group());
+        }
+        return tickets;
+    }
+}
@@ -0,0 +1,147 @@
+package labeling;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+
+import java.io.*;
+import java.net.URL;
+import java.net.URLConnection;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Scarica dalla ricerca di jira i bug chiusi e fixati di un progetto, oppure tutti i ticket modificati da una certa data
+ * per aggiornare lo store locale.
+ * La prima pagina dice quanti sono i ticket e quanti ne restituisce il server per pagina, le pagine successive
+ * vengono scaricate in parallelo (al massimo parallelism richieste contemporanee) e riunite nell'ordine della ricerca.
+ * Le risposte vengono lette in streaming con un JSONTokener, senza copiarle prima in una stringa.
+ */
+public class TicketFetcher {
+    private static final Logger LOGGER = Logger.getLogger(TicketFetcher.class.getName());
+    private static final String FIELDS = "key,issuetype,status,resolution,resolutiondate,versions,created,updated";
+    private static final String BUG = "bug";
+    private static final String FIXED = "fixed";
+    private static final List<String> CLOSED_STATUSES = List.of("closed", "resolved");
+    private static final int TIMEOUT = 60_000;
+
+    private final String baseUrl;
+    private final int parallelism;
+    private final int pageSize;
+
+    /**
+     * @param baseUrl url base di jira, senza lo slash finale
+     * @param parallelism numero massimo di pagine scaricate in parallelo
+     * @param pageSize numero di ticket richiesti per pagina; il server può restituirne meno
+     */
+    public TicketFetcher(String baseUrl, int parallelism, int pageSize) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.parallelism = Math.max(1, parallelism);
+        this.pageSize = Math.max(1, pageSize);
+    }
+
+    /**
+     * @param projName chiave jira del progetto
+     * @param updatedSince se null vengono scaricati i bug chiusi e fixati; altrimenti tutti i ticket del progetto modificati da questa data
+     *                     (formato jql yyyy/MM/dd HH:mm), senza filtri su tipo, stato e risoluzione, così che lo store possa
+     *                     scartare i ticket riaperti o non più fixati confrontandoli con {@link #isFixedBug(JSONObject)}
+     * @return Ritorna i ticket nell'ordine della ricerca
+     * @throws IOException
+     */
+    public List<JSONObject> fetch(String projName, String updatedSince) throws IOException {
+        String jql = TicketFetcher.getJql(projName, updatedSince);
+        JSONObject firstPage = this.readPage(jql, 0, this.pageSize);
+        int total = firstPage.getInt("total");
+        List<JSONObject> issues = new ArrayList<>(total);
+        TicketFetcher.addIssues(issues, firstPage);
+        /* Il server può limitare maxResults, quindi uso la dimensione della pagina che ha restituito davvero */
+        int size = Math.max(1, Math.min(this.pageSize, firstPage.optInt("maxResults", this.pageSize)));
+        if(issues.size() < total) {
+            ExecutorService executor = Executors.newFixedThreadPool(this.parallelism);
+            try {
+                List<Future<JSONObject>> pages = new ArrayList<>();
+                for(int startAt = size; startAt < total; startAt += size) {
+                    int start = startAt;
+                    pages.add(executor.submit(() -> this.readPage(jql, start, size)));
+                }
+                for(Future<JSONObject> page : pages) {
+                    TicketFetcher.addIssues(issues, TicketFetcher.getResult(page));
+                }
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+        LOGGER.log(Level.INFO, () -> "Fetched " + issues.size() + " tickets of " + projName + " from " + this.baseUrl);
+        return issues;
+    }
+
+    private JSONObject readPage(String jql, int startAt, int maxResults) throws IOException {
+        String url = this.baseUrl + "/rest/api/2/search?jql=" + URLEncoder.encode(jql, StandardCharsets.UTF_8)
+                + "&fields=" + FIELDS + "&startAt=" + startAt + "&maxResults=" + maxResults;
+        URLConnection connection = new URL(url).openConnection();
+        connection.setConnectTimeout(TIMEOUT);
+        connection.setReadTimeout(TIMEOUT);
+        try(Reader reader = new BufferedReader(new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+            return new JSONObject(new JSONTokener(reader));
+        }
+    }
+
+    /**
+     * I ticket sono ordinati per chiave, così che le pagine scaricate in parallelo non si sovrappongano
+     */
+    static String getJql(String projName, String updatedSince) {
+        String jql = "project=\"" + projName + "\"";
+        if(updatedSince != null) {
+            jql += " AND updated>=\"" + updatedSince + "\"";
+        } else {
+            jql += " AND \"issueType\"=\"Bug\" AND (\"status\"=\"closed\" OR \"status\"=\"resolved\") AND \"resolution\"=\"fixed\"";
+        }
+        return jql + " ORDER BY key ASC";
+    }
+
+    /**
+     * @return Ritorna true se il ticket soddisfa gli stessi filtri della ricerca completa: un bug chiuso o risolto con risoluzione fixed
+     */
+    public static boolean isFixedBug(JSONObject issue) {
+        JSONObject fields = issue.optJSONObject("fields");
+        if(fields == null) return false;
+        return BUG.equalsIgnoreCase(TicketFetcher.getName(fields, "issuetype"))
+                && CLOSED_STATUSES.contains(String.valueOf(TicketFetcher.getName(fields, "status")).toLowerCase(Locale.ROOT))
+                && FIXED.equalsIgnoreCase(TicketFetcher.getName(fields, "resolution"));
+    }
+
+    private static String getName(JSONObject fields, String field) {
+        JSONObject value = fields.optJSONObject(field);
+        return value != null ? value.optString("name", null) : null;
+    }
+
+    private static void addIssues(List<JSONObject> issues, JSONObject page) {
+        JSONArray pageIssues = page.getJSONArray("issues");
+        for(int i = 0; i < pageIssues.length(); i++) {
+            issues.add(pageIssues.getJSONObject(i));
+        }
+    }
+
+    private static JSONObject getResult(Future<JSONObject> page) throws IOException {
+        try {
+            return page.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while fetching tickets");
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if(cause instanceof IOException) throw (IOException) cause;
+            if(cause instanceof RuntimeException) throw (RuntimeException) cause;
+            throw new IllegalStateException(cause);
+        }
+    }
+}
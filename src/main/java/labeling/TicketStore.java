@@ -0,0 +1,124 @@
+package labeling;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Store locale dei ticket jira: un file JSON-lines con un ticket per riga, così come restituito dalla ricerca.
+ * La prima riga registra l'istante dell'ultimo scaricamento riuscito, da cui parte l'aggiornamento successivo.
+ * Permette di rieseguire il labeling senza rete e di scaricare ad ogni esecuzione solo i ticket modificati dall'ultima volta.
+ * L'aggiornamento scarica tutti i ticket modificati, senza filtri sullo stato, così che un ticket riaperto o non più fixato
+ * dopo il salvataggio venga tolto dallo store ({@link RetrieveTicketsID}).
+ */
+public class TicketStore {
+    private static final Logger LOGGER = Logger.getLogger(TicketStore.class.getName());
+    private static final DateTimeFormatter JIRA_DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH:mm:ss.SSSZ");
+    private static final DateTimeFormatter JQL_DATE = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm");
+    private static final String LAST_FETCH = "lastFetch";
+
+    private final File file;
+    private Instant lastFetch;
+
+    public TicketStore(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Legge i ticket salvati e l'istante dell'ultimo scaricamento ({@link #getLastFetch()})
+     * @return Ritorna i ticket salvati indicizzati per chiave, nell'ordine del file; vuota se il file non esiste
+     * @throws IOException
+     */
+    public Map<String, JSONObject> load() throws IOException {
+        Map<String, JSONObject> tickets = new LinkedHashMap<>();
+        this.lastFetch = null;
+        if(!this.file.isFile()) return tickets;
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(this.file), StandardCharsets.UTF_8))) {
+            String line;
+            int lineNumber = 0;
+            while((line = reader.readLine()) != null) {
+                lineNumber++;
+                if(line.trim().isEmpty()) continue;
+                try {
+                    JSONObject ticket = new JSONObject(line);
+                    if(!ticket.has("key") && ticket.has(LAST_FETCH)) {
+                        this.lastFetch = Instant.parse(ticket.getString(LAST_FETCH));
+                    } else {
+                        tickets.put(ticket.getString("key"), ticket);
+                    }
+                } catch (JSONException | DateTimeParseException e) {
+                    int number = lineNumber;
+                    LOGGER.log(Level.WARNING, () -> "Skipping invalid ticket at line " + number + " of " + this.file);
+                }
+            }
+        }
+        LOGGER.log(Level.INFO, () -> "Loaded " + tickets.size() + " tickets from " + this.file);
+        return tickets;
+    }
+
+    /**
+     * Salva i ticket passando per un file temporaneo, in modo da non lasciare mai uno store scritto a metà
+     * @param lastFetch istante in cui è iniziato lo scaricamento che ha prodotto i ticket
+     * @throws IOException
+     */
+    public void save(Collection<JSONObject> tickets, Instant lastFetch) throws IOException {
+        File tmp = new File(this.file.getAbsoluteFile().getParentFile(), this.file.getName() + ".tmp");
+        try(Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8))) {
+            new JSONObject().put(LAST_FETCH, lastFetch.toString()).write(writer);
+            writer.write('\n');
+            for(JSONObject ticket : tickets) {
+                ticket.write(writer);
+                writer.write('\n');
+            }
+        }
+        Files.move(tmp.toPath(), this.file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        this.lastFetch = lastFetch;
+    }
+
+    /**
+     * @return Ritorna l'istante dell'ultimo scaricamento salvato, null se lo store non lo registra
+     */
+    public Instant getLastFetch() {
+        return lastFetch;
+    }
+
+    /**
+     * Ritorna la data da cui riscaricare i ticket: l'ultimo scaricamento riuscito meno un giorno di margine,
+     * dato che jira interpreta la data della jql nel fuso orario del server. Per gli store che non registrano
+     * l'ultimo scaricamento viene usata l'ultima modifica tra i ticket salvati. I ticket riscaricati sostituiscono quelli salvati.
+     * @return data nel formato della jql, null se non è nota né la data dell'ultimo scaricamento né quella di modifica dei ticket
+     */
+    public String getUpdatedSince(Collection<JSONObject> tickets) {
+        if(this.lastFetch != null) {
+            return OffsetDateTime.ofInstant(this.lastFetch, ZoneOffset.UTC).minusDays(1).format(JQL_DATE);
+        }
+        OffsetDateTime last = null;
+        for(JSONObject ticket : tickets) {
+            String updated = ticket.getJSONObject("fields").optString("updated", null);
+            if(updated == null) continue;
+            try {
+                OffsetDateTime date = OffsetDateTime.parse(updated, JIRA_DATE);
+                if(last == null || date.isAfter(last)) {
+                    last = date;
+                }
+            } catch (DateTimeParseException e) {
+                LOGGER.log(Level.FINE, "Cannot parse update date {0}", updated);
+            }
+        }
+        return last != null ? last.minusDays(1).format(JQL_DATE) : null;
+    }
+}
@@ -7,9 +7,13 @@ import java.util.logging.Logger;
 public class LoggingUtils {
     private LoggingUtils() {}
 
+    /**
+     * Registra una riga per ogni entry della mappa a livello FINE, senza costruire i messaggi se il livello non è abilitato
+     */
     public static <T, E> void logMap(Logger logger, Map<T, E> map) {
+        if(!logger.isLoggable(Level.FINE)) return;
         for(Map.Entry<T, E> entry : map.entrySet()) {
-            logger.log(Level.INFO, () -> entry.getKey() + ": " + entry.getValue());
+            logger.log(Level.FINE, () -> entry.getKey() + ": " + entry.getValue());
         }
     }
 
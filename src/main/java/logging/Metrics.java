@@ -0,0 +1,165 @@
+package logging;
+
+import org.json.JSONObject;
+import utils.Settings;
+
+import java.io.*;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Metriche di un'esecuzione della pipeline su un progetto: tempo speso in ogni fase e contatori (commit, diff, blob, hit delle cache).
+ * Le fasi possono essere misurate da più thread contemporaneamente; il tempo di una fase eseguita in parallelo è la somma dei tempi dei thread.
+ * Il report viene esportato in json da {@link #save(File)} e, se {@link Settings#isJfrEnabled()}, ogni fase emette anche un {@link StageEvent}.
+ */
+public class Metrics {
+    private static final Logger LOGGER = Logger.getLogger(Metrics.class.getName());
+    private static final String HITS = ".hits";
+    private static final String MISSES = ".misses";
+
+    private final String project;
+    private final long startNanos = System.nanoTime();
+    private final boolean jfr = Settings.isJfrEnabled();
+    private final Map<String, LongAdder> stageNanos = Collections.synchronizedMap(new LinkedHashMap<>());
+    private final Map<String, LongAdder> counters = Collections.synchronizedMap(new LinkedHashMap<>());
+
+    public Metrics(String project) {
+        this.project = project;
+    }
+
+    /**
+     * Inizia a misurare una fase; il tempo viene aggiunto alla fase da {@link Stage#stop()}, da chiamare in un blocco finally
+     * @param name nome della fase, ad esempio features o labeling.tickets
+     */
+    public Stage stage(String name) {
+        return new Stage(name);
+    }
+
+    public void addTime(String stage, long nanos) {
+        this.stageNanos.computeIfAbsent(stage, key -> new LongAdder()).add(nanos);
+    }
+
+    public void add(String counter, long delta) {
+        this.counters.computeIfAbsent(counter, key -> new LongAdder()).add(delta);
+    }
+
+    public void increment(String counter) {
+        this.add(counter, 1);
+    }
+
+    public long getCount(String counter) {
+        LongAdder value = this.counters.get(counter);
+        return value != null ? value.sum() : 0;
+    }
+
+    public long getStageMillis(String stage) {
+        LongAdder value = this.stageNanos.get(stage);
+        return value != null ? TimeUnit.NANOSECONDS.toMillis(value.sum()) : 0;
+    }
+
+    /**
+     * @return Ritorna il report: durata totale, millisecondi per fase, contatori, velocità di commit e diff
+     * rispetto alla fase features, hit rate di ogni cache e picco della heap
+     */
+    public JSONObject toJson() {
+        JSONObject json = new JSONObject();
+        json.put("project", this.project);
+        json.put("totalMillis", TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - this.startNanos));
+
+        JSONObject stages = new JSONObject();
+        JSONObject counts = new JSONObject();
+        JSONObject hitRates = new JSONObject();
+        synchronized (this.stageNanos) {
+            for(String stage : this.stageNanos.keySet()) {
+                stages.put(stage, this.getStageMillis(stage));
+            }
+        }
+        synchronized (this.counters) {
+            for(Map.Entry<String, LongAdder> counter : this.counters.entrySet()) {
+                counts.put(counter.getKey(), counter.getValue().sum());
+                if(counter.getKey().endsWith(HITS)) {
+                    String cache = counter.getKey().substring(0, counter.getKey().length() - HITS.length());
+                    long hits = counter.getValue().sum();
+                    long total = hits + this.getCount(cache + MISSES);
+                    hitRates.put(cache, total > 0 ? (double) hits / total : 0.0);
+                }
+            }
+        }
+        json.put("stagesMillis", stages);
+        json.put("counters", counts);
+        json.put("cacheHitRates", hitRates);
+
+        double featureSeconds = this.getStageMillis("features") / 1000.0;
+        JSONObject rates = new JSONObject();
+        rates.put("commitsPerSecond", featureSeconds > 0 ? this.getCount("commits") / featureSeconds : 0.0);
+        rates.put("diffsPerSecond", featureSeconds > 0 ? this.getCount("diffs") / featureSeconds : 0.0);
+        json.put("rates", rates);
+        json.put("peakHeapBytes", Metrics.getPeakHeapBytes());
+        return json;
+    }
+
+    /**
+     * Scrive il report in json, passando da un file temporaneo
+     * @throws IOException
+     */
+    public void save(File file) throws IOException {
+        File tmp = new File(file.getAbsoluteFile().getParentFile(), file.getName() + ".tmp");
+        try(Writer writer = new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8)) {
+            this.toJson().write(writer, 2, 0);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        LOGGER.log(Level.INFO, "Metrics of {0} written to {1}", new Object[] {this.project, file});
+    }
+
+    /**
+     * @return Ritorna la somma dei picchi di utilizzo delle aree della heap dall'avvio della JVM
+     */
+    public static long getPeakHeapBytes() {
+        long peak = 0;
+        for(MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if(pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peak += pool.getPeakUsage().getUsed();
+            }
+        }
+        return peak;
+    }
+
+    /**
+     * Misura di una fase in corso
+     */
+    public class Stage {
+        private final String name;
+        private final long start = System.nanoTime();
+        private final StageEvent event;
+
+        private Stage(String name) {
+            this.name = name;
+            if(Metrics.this.jfr) {
+                this.event = new StageEvent();
+                this.event.begin();
+            } else {
+                this.event = null;
+            }
+        }
+
+        public void stop() {
+            Metrics.this.addTime(this.name, System.nanoTime() - this.start);
+            if(this.event != null && this.event.shouldCommit()) {
+                this.event.project = Metrics.this.project;
+                this.event.stage = this.name;
+                this.event.commit();
+            }
+        }
+    }
+}
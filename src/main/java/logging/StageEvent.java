@@ -0,0 +1,21 @@
+package logging;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento JFR emesso alla fine di ogni fase misurata da {@link Metrics}, se {@link utils.Settings#isJfrEnabled()}.
+ * Viene registrato solo se è attiva una registrazione, ad esempio con -XX:StartFlightRecording.
+ */
+@Name("datasetcreator.Stage")
+@Label("Pipeline Stage")
+@Category("DatasetCreator")
+class StageEvent extends Event {
+    @Label("Project")
+    String project;
+
+    @Label("Stage")
+    String stage;
+}
@@ -0,0 +1,61 @@
+package mydatatype;
+
+/**
+ * Riassunto delle modifiche fatte da un commit ad un file rispetto al primo padre:
+ * righe inserite (edit di tipo INSERT), righe cancellate (edit di tipo DELETE) e righe toccate (tutti gli edit).
+ * Se il commit ha rinominato il file oldPath è il path precedente, altrimenti coincide con path.
+ */
+public class EditSummary {
+
+    private final String oldPath;
+    private final String path;
+    private final int added;
+    private final int deleted;
+    private final int touched;
+
+    public EditSummary(String path, int added, int deleted, int touched) {
+        this(path, path, added, deleted, touched);
+    }
+
+    public EditSummary(String oldPath, String path, int added, int deleted, int touched) {
+        this.oldPath = oldPath;
+        this.path = path;
+        this.added = added;
+        this.deleted = deleted;
+        this.touched = touched;
+    }
+
+    @Override
+    public String toString() {
+        String name = this.isRename() ? this.oldPath + " -> " + this.path : this.path;
+        return name + " +" + this.added + " -" + this.deleted + " ~" + this.touched;
+    }
+
+    public boolean isRename() {
+        return !this.oldPath.equals(this.path);
+    }
+
+    public String getOldPath() {
+        return oldPath;
+    }
+
+    public String getPath() {
+        return path;
+    }
+
+    public int getAdded() {
+        return added;
+    }
+
+    public int getDeleted() {
+        return deleted;
+    }
+
+    public int getTouched() {
+        return touched;
+    }
+
+    public int getChurn() {
+        return added - deleted;
+    }
+}
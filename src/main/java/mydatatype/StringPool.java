@@ -0,0 +1,37 @@
+package mydatatype;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Assegna ad ogni stringa distinta un id intero denso (0, 1, 2, ...), così che le stringhe ripetute
+ * (ad esempio i path delle classi, uguali in quasi tutte le release) vengano tenute in memoria una sola volta.
+ * I metodi sono sincronizzati perché lo stesso pool è condiviso dalle release calcolate in parallelo.
+ */
+public class StringPool {
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final List<String> values = new ArrayList<>();
+
+    /**
+     * @return Ritorna l'id della stringa, assegnandone uno nuovo se la stringa non è ancora nel pool
+     */
+    public synchronized int intern(String value) {
+        Integer id = this.ids.get(value);
+        if(id == null) {
+            id = this.values.size();
+            this.ids.put(value, id);
+            this.values.add(value);
+        }
+        return id;
+    }
+
+    public synchronized String get(int id) {
+        return this.values.get(id);
+    }
+
+    public synchronized int size() {
+        return this.values.size();
+    }
+}
@@ -0,0 +1,215 @@
+package utils;
+
+import logging.Metrics;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectLoader;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cache del LOC dei file indicizzata per id del blob. Un blob git è immutabile e identificato dal suo contenuto,
+ * quindi il suo LOC va calcolato una sola volta anche se il file resta invariato per molte release.
+ * In memoria la cache è LRU con capacità {@link Settings#getBlobCacheSize()}; se abilitata viene anche salvata
+ * nel file datasetcreator-loc.bin nella cartella .git (header seguito da coppie id del blob, LOC).
+ */
+public class BlobLineCountCache {
+    private static final Logger LOGGER = Logger.getLogger(BlobLineCountCache.class.getName());
+    private static final int MAGIC = 0x4C4F4343;
+    private static final int VERSION = 2;
+    public static final String FILE_NAME = "datasetcreator-loc.bin";
+    private static final String HITS = "blobCache.hits";
+    private static final String MISSES = "blobCache.misses";
+
+    private static final Map<File, BlobLineCountCache> instances = new ConcurrentHashMap<>();
+
+    private final File file;
+    private final Map<ObjectId, Integer> lineCounts;
+    private final Queue<Map.Entry<ObjectId, Integer>> pending = new ConcurrentLinkedQueue<>();
+    private boolean rewrite;
+    /* Progetti che stanno usando la cache, modificato solo dentro compute sulla mappa delle istanze */
+    private int references;
+
+    private BlobLineCountCache(File file, int capacity) {
+        this.file = file;
+        this.lineCounts = new LinkedHashMap<ObjectId, Integer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<ObjectId, Integer> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * @return Ritorna la cache associata al repository, caricandola dal file nella cartella .git la prima volta.
+     * L'istanza resta in memoria finché non viene rilasciata dall'ultimo progetto che l'ha acquisita con {@link #acquire(Repository)}
+     */
+    public static BlobLineCountCache getInstance(Repository repository) {
+        return instances.computeIfAbsent(repository.getDirectory().getAbsoluteFile(), BlobLineCountCache::open);
+    }
+
+    /**
+     * Come {@link #getInstance(Repository)}, ma registra un progetto in più che usa la cache; va bilanciato con {@link #release(Repository)}
+     */
+    public static BlobLineCountCache acquire(Repository repository) {
+        return instances.compute(repository.getDirectory().getAbsoluteFile(), (directory, cache) -> {
+            BlobLineCountCache acquired = cache != null ? cache : BlobLineCountCache.open(directory);
+            acquired.references++;
+            return acquired;
+        });
+    }
+
+    /**
+     * Rilascia la cache acquisita da un progetto: quando nessun progetto la usa più viene tolta dalla memoria.
+     * I valori non salvati con {@link #save()} vengono persi.
+     */
+    public static void release(Repository repository) {
+        instances.computeIfPresent(repository.getDirectory().getAbsoluteFile(), (directory, cache) -> --cache.references > 0 ? cache : null);
+    }
+
+    private static BlobLineCountCache open(File directory) {
+        BlobLineCountCache cache = new BlobLineCountCache(new File(directory, FILE_NAME), Settings.getBlobCacheSize());
+        if(Settings.isBlobCacheEnabled()) {
+            cache.load();
+        }
+        return cache;
+    }
+
+    /**
+     * Ritorna il LOC del blob, calcolandolo con {@link SourceCodeLineCounter} solo se non è già in cache
+     * @param reader reader con cui aprire il blob in caso di cache miss
+     * @param blobId id del blob
+     * @return numero di righe di codice del blob
+     * @throws IOException
+     */
+    public int getNumberOfLines(ObjectReader reader, ObjectId blobId) throws IOException {
+        Integer cached;
+        synchronized (this.lineCounts) {
+            cached = this.lineCounts.get(blobId);
+        }
+        if(cached != null) {
+            return cached;
+        }
+        ObjectLoader loader = reader.open(blobId);
+        int loc = SourceCodeLineCounter.getNumberOfLines(loader.getCachedBytes(Integer.MAX_VALUE));
+        ObjectId key = blobId.copy();
+        synchronized (this.lineCounts) {
+            if(this.lineCounts.put(key, loc) == null) {
+                this.pending.add(Map.entry(key, loc));
+            }
+        }
+        return loc;
+    }
+
+    /**
+     * Come {@link #getNumberOfLines(ObjectReader, ObjectId)}, per una lista di blob: quelli non in cache vengono letti
+     * in blocco con {@link RepositoryAccess#readBlobs(ObjectReader, List, RepositoryAccess.BlobConsumer)}.
+     * La cache è condivisa dai progetti sullo stesso repository, quindi hit e miss vengono contati nelle metriche del progetto chiamante.
+     * @param metrics metriche del progetto chiamante, in cui contare blobCache.hits e blobCache.misses; null per non contarli
+     * @return Ritorna il LOC di ogni blob, nello stesso ordine della lista
+     * @throws IOException
+     */
+    public int[] getNumberOfLines(ObjectReader reader, List<ObjectId> blobIds, Metrics metrics) throws IOException {
+        int[] locs = new int[blobIds.size()];
+        Map<ObjectId, List<Integer>> missing = new LinkedHashMap<>();
+        synchronized (this.lineCounts) {
+            for(int i = 0; i < blobIds.size(); i++) {
+                Integer cached = this.lineCounts.get(blobIds.get(i));
+                if(cached != null) {
+                    locs[i] = cached;
+                } else {
+                    missing.computeIfAbsent(blobIds.get(i), key -> new ArrayList<>()).add(i);
+                }
+            }
+        }
+        if(metrics != null) {
+            metrics.add(HITS, (long) blobIds.size() - missing.size());
+            metrics.add(MISSES, missing.size());
+        }
+        RepositoryAccess.readBlobs(reader, new ArrayList<>(missing.keySet()), (blobId, content) -> {
+            int loc = SourceCodeLineCounter.getNumberOfLines(content);
+            for(int index : missing.get(blobId)) {
+                locs[index] = loc;
+            }
+            ObjectId key = blobId.copy();
+            synchronized (this.lineCounts) {
+                if(this.lineCounts.put(key, loc) == null) {
+                    this.pending.add(Map.entry(key, loc));
+                }
+            }
+        });
+        return locs;
+    }
+
+    /**
+     * Accoda sul file i LOC calcolati dall'ultimo salvataggio
+     * @throws IOException
+     */
+    public synchronized void save() throws IOException {
+        if(!Settings.isBlobCacheEnabled()) return;
+        if(this.pending.isEmpty() && !this.rewrite) return;
+        boolean append = !this.rewrite && this.file.length() > 0;
+        int written = 0;
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.file, append)))) {
+            if(!append) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                /* Riscrivo anche i valori ancora in memoria, quelli già sul file sono andati persi */
+                synchronized (this.lineCounts) {
+                    for(Map.Entry<ObjectId, Integer> entry : this.lineCounts.entrySet()) {
+                        BlobLineCountCache.writeRecord(out, entry.getKey(), entry.getValue());
+                        written++;
+                    }
+                }
+                this.pending.clear();
+            }
+            Map.Entry<ObjectId, Integer> entry;
+            while((entry = this.pending.poll()) != null) {
+                BlobLineCountCache.writeRecord(out, entry.getKey(), entry.getValue());
+                written++;
+            }
+        }
+        this.rewrite = false;
+        int total = written;
+        LOGGER.log(Level.INFO, () -> "LOC cache: saved " + total + " blobs to " + this.file);
+    }
+
+    private void load() {
+        if(!this.file.isFile()) return;
+        byte[] raw = new byte[20];
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)))) {
+            if(in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOGGER.log(Level.WARNING, "LOC cache {0} has an unknown format, it will be rebuilt", this.file);
+                this.rewrite = true;
+                return;
+            }
+            while(in.read(raw, 0, 1) > 0) {
+                in.readFully(raw, 1, raw.length - 1);
+                this.lineCounts.put(ObjectId.fromRaw(raw), in.readInt());
+            }
+        } catch (EOFException e) {
+            /* Record troncato: l'ultimo salvataggio è stato interrotto, riscrivo il file alla prossima save */
+            this.rewrite = true;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, e, () -> "Cannot read LOC cache " + this.file);
+            this.lineCounts.clear();
+            this.rewrite = true;
+        }
+        LOGGER.log(Level.INFO, () -> "LOC cache: loaded " + this.lineCounts.size() + " blobs from " + this.file);
+    }
+
+    private static void writeRecord(DataOutputStream out, ObjectId blobId, int loc) throws IOException {
+        blobId.copyRawTo(out);
+        out.writeInt(loc);
+    }
+}
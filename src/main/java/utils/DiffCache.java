@@ -0,0 +1,233 @@
+package utils;
+
+import features.FeatureCalculatorUtils;
+import logging.Metrics;
+import mydatatype.EditSummary;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Cache persistente dei diff dei commit. Per ogni commit tiene, rispetto al primo padre, il riassunto delle modifiche
+ * ({@link EditSummary}) di ogni classe java valida toccata. Poiché la storia git è immutabile i valori non scadono mai:
+ * alla prima esecuzione vengono calcolati con il DiffFormatter, alle successive vengono letti dal file.
+ *
+ * Il file ha un header (magic, versione) seguito da un record per commit:
+ * id del commit, id del padre, numero di entry e per ogni entry path, path precedente se il file è stato rinominato,
+ * righe aggiunte, cancellate e toccate.
+ * I nuovi record vengono accodati al file da {@link #save()}.
+ */
+public class DiffCache {
+    private static final Logger LOGGER = Logger.getLogger(DiffCache.class.getName());
+    private static final int MAGIC = 0x44494643;
+    private static final int VERSION = 2;
+    public static final String FILE_NAME = "datasetcreator-diffs.bin";
+    private static final String HITS = "diffCache.hits";
+    private static final String MISSES = "diffCache.misses";
+
+    private static final Map<File, DiffCache> instances = new ConcurrentHashMap<>();
+
+    private final File file;
+    private final Map<ObjectId, CachedDiff> diffs = new ConcurrentHashMap<>();
+    private final Queue<CachedDiff> pending = new ConcurrentLinkedQueue<>();
+    private boolean rewrite;
+    /* Progetti che stanno usando la cache, modificato solo dentro compute sulla mappa delle istanze */
+    private int references;
+
+    private DiffCache(File file) {
+        this.file = file;
+    }
+
+    /**
+     * @return Ritorna la cache associata al repository, caricandola dal file nella cartella .git la prima volta.
+     * L'istanza resta in memoria finché non viene rilasciata dall'ultimo progetto che l'ha acquisita con {@link #acquire(Repository)}
+     */
+    public static DiffCache getInstance(Repository repository) {
+        return instances.computeIfAbsent(repository.getDirectory().getAbsoluteFile(), DiffCache::open);
+    }
+
+    /**
+     * Come {@link #getInstance(Repository)}, ma registra un progetto in più che usa la cache; va bilanciato con {@link #release(Repository)}
+     */
+    public static DiffCache acquire(Repository repository) {
+        return instances.compute(repository.getDirectory().getAbsoluteFile(), (directory, cache) -> {
+            DiffCache acquired = cache != null ? cache : DiffCache.open(directory);
+            acquired.references++;
+            return acquired;
+        });
+    }
+
+    /**
+     * Rilascia la cache acquisita da un progetto: quando nessun progetto la usa più viene tolta dalla memoria.
+     * I record non salvati con {@link #save()} vengono persi.
+     */
+    public static void release(Repository repository) {
+        instances.computeIfPresent(repository.getDirectory().getAbsoluteFile(), (directory, cache) -> --cache.references > 0 ? cache : null);
+    }
+
+    private static DiffCache open(File directory) {
+        DiffCache cache = new DiffCache(new File(directory, FILE_NAME));
+        if(Settings.isDiffCacheEnabled()) {
+            cache.load();
+        }
+        return cache;
+    }
+
+    /**
+     * Ritorna il riassunto delle modifiche fatte dal commit rispetto al suo primo padre, limitato alle classi valide.
+     * Se il formatter rileva le rinomine, per i file rinominati il riassunto riporta anche il path precedente.
+     * Se il commit non è in cache il diff viene calcolato con il DiffFormatter passato in input e aggiunto alla cache.
+     * @param commit commit con almeno un padre
+     * @param diffFormatter formatter da usare in caso di cache miss
+     * @return lista dei riassunti, nell'ordine delle DiffEntry
+     * @throws IOException
+     */
+    public List<EditSummary> getEditSummaries(RevCommit commit, DiffFormatter diffFormatter) throws IOException {
+        return this.getEditSummaries(commit, diffFormatter, null, null);
+    }
+
+    /**
+     * Come {@link #getEditSummaries(RevCommit, DiffFormatter)}, ma in caso di cache miss calcola le EditList delle DiffEntry passate in input
+     * invece di confrontare gli alberi del commit e del padre. La cache è condivisa dai progetti sullo stesso repository,
+     * quindi hit e miss vengono contati nelle metriche del progetto chiamante.
+     * @param entries DiffEntry del commit rispetto al primo padre, le stesse che il formatter troverebbe; null per confrontare gli alberi
+     * @param metrics metriche del progetto chiamante, in cui contare diffCache.hits e diffCache.misses; null per non contarli
+     */
+    public List<EditSummary> getEditSummaries(RevCommit commit, DiffFormatter diffFormatter, List<DiffEntry> entries, Metrics metrics) throws IOException {
+        ObjectId parentId = commit.getParent(0).getId();
+        CachedDiff cached = this.diffs.get(commit.getId());
+        if(cached != null && cached.parentId.equals(parentId)) {
+            if(metrics != null) metrics.increment(HITS);
+            return cached.summaries;
+        }
+        if(metrics != null) metrics.increment(MISSES);
+        List<EditSummary> summaries = new ArrayList<>();
+        List<DiffEntry> diffEntries = entries != null ? entries : diffFormatter.scan(parentId, commit.getId());
+        for(DiffEntry entry : diffEntries) {
+            String path = entry.getNewPath();
+            if(!FeatureCalculatorUtils.isPathValid(path)) continue;
+            String oldPath = entry.getChangeType() == DiffEntry.ChangeType.RENAME ? entry.getOldPath() : path;
+            summaries.add(FeatureCalculatorUtils.getEditSummary(oldPath, path, diffFormatter.toFileHeader(entry).toEditList()));
+        }
+        CachedDiff computed = new CachedDiff(commit.getId().copy(), parentId.copy(), Collections.unmodifiableList(summaries));
+        if(this.diffs.putIfAbsent(computed.commitId, computed) == null) {
+            this.pending.add(computed);
+        }
+        return computed.summaries;
+    }
+
+    /**
+     * @return Ritorna true se la cache contiene il diff del commit
+     */
+    public boolean contains(ObjectId commitId) {
+        return this.diffs.containsKey(commitId);
+    }
+
+    /**
+     * Scrive sul file i commit calcolati dall'ultimo salvataggio
+     * @throws IOException
+     */
+    public synchronized void save() throws IOException {
+        if(!Settings.isDiffCacheEnabled()) return;
+        if(this.pending.isEmpty() && !this.rewrite) return;
+        boolean append = !this.rewrite && this.file.length() > 0;
+        Iterable<CachedDiff> toWrite = append ? this.pending : this.diffs.values();
+        int written = 0;
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(this.file, append)))) {
+            if(!append) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+            }
+            for(CachedDiff diff : toWrite) {
+                DiffCache.writeRecord(out, diff);
+                written++;
+            }
+        }
+        this.pending.clear();
+        this.rewrite = false;
+        int total = written;
+        LOGGER.log(Level.INFO, () -> "Diff cache: saved " + total + " commits to " + this.file);
+    }
+
+    private void load() {
+        if(!this.file.isFile()) return;
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(this.file)))) {
+            if(in.readInt() != MAGIC || in.readInt() != VERSION) {
+                LOGGER.log(Level.WARNING, "Diff cache {0} has an unknown format, it will be rebuilt", this.file);
+                this.rewrite = true;
+                return;
+            }
+            while(true) {
+                CachedDiff diff = DiffCache.readRecord(in);
+                if(diff == null) break;
+                this.diffs.put(diff.commitId, diff);
+            }
+        } catch (EOFException e) {
+            /* Record troncato: l'ultimo salvataggio è stato interrotto, riscrivo il file alla prossima save */
+            this.rewrite = true;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, e, () -> "Cannot read diff cache " + this.file);
+            this.diffs.clear();
+            this.rewrite = true;
+        }
+        LOGGER.log(Level.INFO, () -> "Diff cache: loaded " + this.diffs.size() + " commits from " + this.file);
+    }
+
+    private static void writeRecord(DataOutputStream out, CachedDiff diff) throws IOException {
+        diff.commitId.copyRawTo(out);
+        diff.parentId.copyRawTo(out);
+        out.writeInt(diff.summaries.size());
+        for(EditSummary summary : diff.summaries) {
+            out.writeUTF(summary.getPath());
+            out.writeBoolean(summary.isRename());
+            if(summary.isRename()) {
+                out.writeUTF(summary.getOldPath());
+            }
+            out.writeInt(summary.getAdded());
+            out.writeInt(summary.getDeleted());
+            out.writeInt(summary.getTouched());
+        }
+    }
+
+    private static CachedDiff readRecord(DataInputStream in) throws IOException {
+        byte[] raw = new byte[2 * 20];
+        int first = in.read(raw, 0, 1);
+        if(first < 0) return null;
+        in.readFully(raw, 1, raw.length - 1);
+        ObjectId commitId = ObjectId.fromRaw(raw, 0);
+        ObjectId parentId = ObjectId.fromRaw(raw, 20);
+        int size = in.readInt();
+        List<EditSummary> summaries = new ArrayList<>(size);
+        for(int i = 0; i < size; i++) {
+            String path = in.readUTF();
+            String oldPath = in.readBoolean() ? in.readUTF() : path;
+            summaries.add(new EditSummary(oldPath, path, in.readInt(), in.readInt(), in.readInt()));
+        }
+        return new CachedDiff(commitId, parentId, Collections.unmodifiableList(summaries));
+    }
+
+    private static class CachedDiff {
+        private final ObjectId commitId;
+        private final ObjectId parentId;
+        private final List<EditSummary> summaries;
+
+        private CachedDiff(ObjectId commitId, ObjectId parentId, List<EditSummary> summaries) {
+            this.commitId = commitId;
+            this.parentId = parentId;
+            this.summaries = summaries;
+        }
+    }
+}
@@ -0,0 +1,245 @@
+package utils;
+
+import features.FeatureCalculatorUtils;
+import mydatatype.EditSummary;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.lib.AbbreviatedObjectId;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Backend dei diff che usa l'eseguibile git locale per trovare i file modificati: {@link #prefetch(List)} avvia un solo
+ * {@code git log --raw} per progetto e ne legge l'output in streaming, tenendo in memoria le DiffEntry di ogni commit.
+ * Le EditList vengono poi calcolate dal DiffFormatter di JGit come nel backend JGit, quindi i riassunti sono gli stessi:
+ * git sostituisce solo il confronto degli alberi e il rilevamento delle rinomine.
+ *
+ * Le DiffEntry di git coincidono con quelle di JGit solo se il commit aggiunge o modifica file: il RenameDetector di JGit
+ * accoppia solo file cancellati con file aggiunti e divide in cancellazione e aggiunta i file che cambiano tipo.
+ * I commit con un file cancellato o che cambia tipo, quelli che non sono stati letti e tutti se git non è disponibile
+ * vengono quindi calcolati interamente dal backend JGit.
+ */
+public class GitCliHistoryBackend implements HistoryBackend {
+    private static final Logger LOGGER = Logger.getLogger(GitCliHistoryBackend.class.getName());
+    private static final char COMMIT_MARKER = '\u0001';
+
+    private final Repository repository;
+    private final String executable;
+    private final JGitHistoryBackend fallback;
+    private final Map<ObjectId, List<DiffEntry>> entries = new ConcurrentHashMap<>();
+
+    public GitCliHistoryBackend(Repository repository, String executable, JGitHistoryBackend fallback) {
+        this.repository = repository;
+        this.executable = executable;
+        this.fallback = fallback;
+    }
+
+    @Override
+    public void prefetch(List<ObjectId> tips) throws IOException {
+        if(tips.isEmpty()) return;
+        File errors = File.createTempFile("git-log", ".err");
+        try {
+            ProcessBuilder builder = new ProcessBuilder(this.getCommand());
+            builder.redirectError(errors);
+            Process process;
+            try {
+                process = builder.start();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, e, () -> "Cannot run " + this.executable + ", diffs will be computed with JGit");
+                return;
+            }
+            try(Writer stdin = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8)) {
+                for(ObjectId tip : tips) {
+                    stdin.write(tip.name());
+                    stdin.write('\n');
+                }
+            }
+            LogParser parser = new LogParser();
+            try(BufferedReader stdout = new BufferedReader(new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while((line = stdout.readLine()) != null) {
+                    parser.accept(line);
+                }
+            }
+            int exitCode = GitCliHistoryBackend.waitFor(process);
+            if(exitCode != 0) {
+                String message = new String(Files.readAllBytes(errors.toPath()), StandardCharsets.UTF_8).trim();
+                LOGGER.log(Level.WARNING, () -> this.executable + " log exited with " + exitCode + ", the remaining diffs will be computed with JGit: " + message);
+                return;
+            }
+            parser.finish();
+            LOGGER.log(Level.INFO, () -> "git log: read " + parser.commits + " commits, " + parser.fallbacks + " with deleted or retyped files left to JGit");
+        } finally {
+            Files.deleteIfExists(errors.toPath());
+        }
+    }
+
+    private List<String> getCommand() {
+        List<String> command = new ArrayList<>();
+        command.add(this.executable);
+        command.add("--git-dir=" + this.repository.getDirectory().getAbsolutePath());
+        command.add("-c");
+        command.add("core.quotePath=false");
+        command.add("log");
+        command.add("--stdin");
+        command.add("--format=" + "%x01%H %P");
+        command.add("--diff-merges=first-parent");
+        command.add("--raw");
+        command.add("--no-abbrev");
+        command.add("--no-renames");
+        command.add("--no-color");
+        command.add("--no-show-signature");
+        return command;
+    }
+
+    private static int waitFor(Process process) throws IOException {
+        try {
+            return process.waitFor();
+        } catch (InterruptedException e) {
+            process.destroy();
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for git log");
+        }
+    }
+
+    @Override
+    public List<EditSummary> getEditSummaries(RevCommit commit) throws IOException {
+        List<DiffEntry> commitEntries = this.entries.get(commit.getId());
+        if(commitEntries == null) return this.fallback.getEditSummaries(commit);
+        return this.fallback.getEditSummaries(commit, commitEntries);
+    }
+
+    /**
+     * @return Ritorna true se le DiffEntry del commit sono state lette da git log
+     */
+    boolean isPrefetched(ObjectId commitId) {
+        return this.entries.containsKey(commitId);
+    }
+
+    @Override
+    public void close() {
+        this.fallback.close();
+    }
+
+    /**
+     * Legge l'output di git log una riga alla volta: dopo l'intestazione di ogni commit c'è una riga per file modificato,
+     * nel formato ":modo modo id id stato\tpath".
+     */
+    private class LogParser {
+        private ObjectId commitId;
+        private ObjectId parentId;
+        private List<DiffEntry> commitEntries = new ArrayList<>();
+        private boolean exact;
+        private int commits;
+        private int fallbacks;
+
+        private void accept(String line) {
+            if(!line.isEmpty() && line.charAt(0) == COMMIT_MARKER) {
+                this.finishCommit();
+                String[] ids = line.substring(1).trim().split(" ");
+                this.commitId = ObjectId.fromString(ids[0]);
+                this.parentId = ids.length > 1 ? ObjectId.fromString(ids[1]) : null;
+                this.exact = true;
+            } else if(line.startsWith(":") && this.commitId != null) {
+                int tab = line.indexOf('\t');
+                String[] fields = line.substring(1, tab).split(" ");
+                char status = fields[4].charAt(0);
+                if(status != 'A' && status != 'M') {
+                    this.exact = false;
+                    return;
+                }
+                String path = GitCliHistoryBackend.unquote(line.substring(tab + 1));
+                /* Anche i file non validi vanno letti: solo un file cancellato impedisce di usare le DiffEntry di git */
+                if(FeatureCalculatorUtils.isPathValid(path)) {
+                    FileMode oldMode = FileMode.fromBits(Integer.parseInt(fields[0], 8));
+                    FileMode newMode = FileMode.fromBits(Integer.parseInt(fields[1], 8));
+                    this.commitEntries.add(new RawDiffEntry(path, oldMode, newMode, ObjectId.fromString(fields[2]), ObjectId.fromString(fields[3])));
+                }
+            }
+        }
+
+        private void finishCommit() {
+            if(this.commitId != null && this.parentId != null) {
+                this.commits++;
+                if(this.exact) {
+                    /* Il RenameDetector di JGit ordina le DiffEntry per path */
+                    this.commitEntries.sort(Comparator.comparing(DiffEntry::getNewPath));
+                    GitCliHistoryBackend.this.entries.put(this.commitId, Collections.unmodifiableList(this.commitEntries));
+                } else {
+                    this.fallbacks++;
+                }
+            }
+            this.commitEntries = new ArrayList<>();
+            this.commitId = null;
+            this.parentId = null;
+        }
+
+        private void finish() {
+            this.finishCommit();
+        }
+    }
+
+    /**
+     * DiffEntry di un file aggiunto o modificato letta da git log, costruita come quelle del TreeWalk di JGit
+     */
+    private static class RawDiffEntry extends DiffEntry {
+        private RawDiffEntry(String path, FileMode oldMode, FileMode newMode, ObjectId oldId, ObjectId newId) {
+            this.changeType = oldMode == FileMode.MISSING ? ChangeType.ADD : ChangeType.MODIFY;
+            this.oldPath = this.changeType == ChangeType.ADD ? DEV_NULL : path;
+            this.newPath = path;
+            this.oldMode = oldMode;
+            this.newMode = newMode;
+            this.oldId = AbbreviatedObjectId.fromObjectId(oldId);
+            this.newId = AbbreviatedObjectId.fromObjectId(newId);
+        }
+    }
+
+    /**
+     * @return Ritorna il path tolte le virgolette e le sequenze di escape che git usa per i caratteri speciali (anche in ottale)
+     */
+    static String unquote(String value) {
+        if(value.length() < 2 || !value.startsWith("\"") || !value.endsWith("\"")) return value;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        int end = value.length() - 1;
+        int i = 1;
+        while(i < end) {
+            int next = value.indexOf('\\', i);
+            if(next < 0 || next >= end - 1) next = end;
+            byte[] plain = value.substring(i, next).getBytes(StandardCharsets.UTF_8);
+            bytes.write(plain, 0, plain.length);
+            if(next == end) break;
+            char escaped = value.charAt(next + 1);
+            i = next + 2;
+            switch (escaped) {
+                case 'a': bytes.write(7); break;
+                case 'b': bytes.write('\b'); break;
+                case 'f': bytes.write('\f'); break;
+                case 'n': bytes.write('\n'); break;
+                case 'r': bytes.write('\r'); break;
+                case 't': bytes.write('\t'); break;
+                case 'v': bytes.write(11); break;
+                default:
+                    if(escaped >= '0' && escaped <= '7' && next + 4 <= end) {
+                        bytes.write(Integer.parseInt(value.substring(next + 1, next + 4), 8));
+                        i = next + 4;
+                    } else {
+                        bytes.write(escaped);
+                    }
+            }
+        }
+        return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
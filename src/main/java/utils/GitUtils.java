@@ -1,79 +1,118 @@
 package utils;
 
-import features.FeatureCalculatorUtils;
 import labeling.Tag;
+import labeling.TicketCommitIndex;
+import mydatatype.EditSummary;
 import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.api.errors.GitAPIException;
-import org.eclipse.jgit.diff.DiffEntry;
 import org.eclipse.jgit.diff.DiffFormatter;
 import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
 import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.util.io.DisabledOutputStream;
 
 import java.io.IOException;
 import java.util.*;
+import java.util.regex.Pattern;
 
 public class GitUtils {
     private GitUtils() {}
+    /**
+     * Ordina i tag per data del commit a cui puntano. Ogni tag viene risolto una sola volta
+     * e la data viene messa in cache, quindi l'ordinamento costa O(n log n) confronti senza nuovi parse.
+     * @param git
+     * @return Ritorna la lista dei tag ordinata per data crescente
+     * @throws GitAPIException
+     * @throws IOException
+     */
     public static List<Ref> getTagOrderedByDate(Git git) throws GitAPIException, IOException {
-        List<Ref> orderedTagList = git.tagList().call();
-        orderedTagList.remove(orderedTagList.size() - 1);
-        int n = orderedTagList.size();
-
-        for(int i = 1; i < n - 1; i++) {
-            int min = i;
-            for(int j = i+1; j < n; j++) {
-                try(RevWalk revWalk = new RevWalk(git.getRepository())) {
-                    RevCommit commitJ = revWalk.parseCommit(GitUtils.getObjectIdFromRef(orderedTagList.get(j)));
-                    RevCommit commitMin = revWalk.parseCommit(GitUtils.getObjectIdFromRef(orderedTagList.get(min)));
-                    Date dateJ = commitJ.getAuthorIdent().getWhen();
-                    Date dateMin = commitMin.getAuthorIdent().getWhen();
-                    if(dateJ.before(dateMin)) {
-                        min = j;
-                    }
-                }
-            }
-            if(min != i) {
-                Collections.swap(orderedTagList, min, i);
-            }
-        }
+        Map<Ref, Date> tagDates = GitUtils.getTagDates(git);
+        List<Ref> orderedTagList = new ArrayList<>(tagDates.keySet());
+        orderedTagList.sort(Comparator.comparing(tagDates::get));
         return orderedTagList;
     }
 
     public static Map<Tag, Integer> getReleaseDate(Git git) throws GitAPIException, IOException {
+        return GitUtils.getReleaseDate(git, null);
+    }
+
+    /**
+     * Come {@link #getReleaseDate(Git)}, ma considera release solo i tag il cui nome corrisponde a tagPattern
+     * @param tagPattern pattern dei nomi dei tag di release, null per usare tutti i tag
+     */
+    public static Map<Tag, Integer> getReleaseDate(Git git, Pattern tagPattern) throws GitAPIException, IOException {
+        return GitUtils.getReleaseDate(git, tagPattern, false);
+    }
+
+    /**
+     * Come {@link #getReleaseDate(Git, Pattern)}; se dropLastTag è true scarta anche l'ultimo tag in ordine alfabetico
+     * tra quelli che corrispondono a tagPattern, che nei progetti predefiniti di {@link labeling.Project} non è una release
+     * @param tagPattern pattern dei nomi dei tag di release, null per usare tutti i tag
+     * @param dropLastTag true per scartare l'ultimo tag in ordine alfabetico
+     */
+    public static Map<Tag, Integer> getReleaseDate(Git git, Pattern tagPattern, boolean dropLastTag) throws GitAPIException, IOException {
         Map<Tag, Integer> release = new LinkedHashMap<>();
-        List<Ref> tagList = GitUtils.getTagOrderedByDate(git);
+        Map<Ref, Date> tagDates = GitUtils.getTagDates(git);
+        List<Ref> tagList = new ArrayList<>(tagDates.keySet());
+        if(tagPattern != null) {
+            tagList.removeIf(tag -> !tagPattern.matcher(StringUtils.removeSubstring(tag.getName(), StringConstant.REFS_TAGS)).matches());
+        }
+        if(dropLastTag && !tagList.isEmpty()) {
+            tagList.remove(Collections.max(tagList, Comparator.comparing(Ref::getName)));
+        }
+        tagList.sort(Comparator.comparing(tagDates::get));
         int counter = 1;
 
         for (Ref tag : tagList) {
-            try(RevWalk revWalk = new RevWalk(git.getRepository())) {
+            Tag key = new Tag(tagDates.get(tag), StringUtils.removeSubstring(tag.getName(), "refs/tags/"));
+            release.put(key, counter);
+            counter += 1;
+        }
+        return Collections.unmodifiableMap(release);
+    }
+
+    /**
+     * Risolve ogni tag nel commit a cui punta con un unico RevWalk e ne legge la data dell'autore
+     * @return Ritorna una mappa tag -> data, nell'ordine restituito da git tag
+     */
+    private static Map<Ref, Date> getTagDates(Git git) throws GitAPIException, IOException {
+        List<Ref> tagList = git.tagList().call();
+        Map<Ref, Date> tagDates = new LinkedHashMap<>();
+        try(RevWalk revWalk = new RevWalk(git.getRepository())) {
+            for(Ref tag : tagList) {
                 RevCommit commit = revWalk.parseCommit(GitUtils.getObjectIdFromRef(tag));
-                Date tagDate = commit.getAuthorIdent().getWhen();
-                Tag key = new Tag(tagDate, StringUtils.removeSubstring(tag.getName(), "refs/tags/"));
-                release.put(key, counter);
-                counter += 1;
+                tagDates.put(tag, commit.getAuthorIdent().getWhen());
             }
         }
-        return release;
+        return tagDates;
     }
 
     public static List<String> getDiffClasses(Git git, String tickedID) throws GitAPIException, IOException {
+        try(ObjectReader reader = git.getRepository().newObjectReader();
+            HistoryBackend backend = new JGitHistoryBackend(git.getRepository(), () -> reader)) {
+            return GitUtils.getDiffClasses(git, backend, tickedID);
+        }
+    }
+
+    /**
+     * Come {@link #getDiffClasses(Git, String)}, ma legge i diff dal backend passato in input, che non viene chiuso
+     */
+    public static List<String> getDiffClasses(Git git, HistoryBackend backend, String tickedID) throws GitAPIException, IOException {
         List<String> classList = new ArrayList<>();
-        DiffFormatter diffFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE);
-        diffFormatter.setRepository(git.getRepository());
 
+        /* Cerco la chiave completa del ticket, in modo che ZOOKEEPER-12 non trovi anche ZOOKEEPER-123 */
+        Pattern ticketPattern = TicketCommitIndex.getTicketPattern(tickedID.substring(0, Math.max(0, tickedID.lastIndexOf('-'))));
         Iterable<RevCommit> commits = git.log().call();
         for(RevCommit commit : commits) {
             if (commit.getParentCount() == 0) continue;
             String shortMessage = commit.getShortMessage();
-            if(shortMessage.contains(tickedID)) {
-                List<DiffEntry> diffEntries = diffFormatter.scan(commit.getParent(0), commit);
-                for (DiffEntry diffEntry : diffEntries) {
-                    String path = diffEntry.getNewPath();
-                    if(!FeatureCalculatorUtils.isPathValid(path)) continue;
-                    classList.add(path);
+            if(TicketCommitIndex.extractTicketKeys(ticketPattern, shortMessage).contains(tickedID)) {
+                /* Il backend restituisce già solo le classi valide */
+                for (EditSummary summary : backend.getEditSummaries(commit)) {
+                    classList.add(summary.getPath());
                 }
             }
         }
@@ -88,6 +127,17 @@ public class GitUtils {
         }
     }
 
+    /**
+     * @return Ritorna un DiffFormatter che legge gli oggetti tramite il reader passato in input; il reader non viene chiuso dal formatter.
+     * Il formatter rileva le rinomine, così che un file spostato risulti come una DiffEntry di tipo RENAME e non come una cancellazione più un'aggiunta
+     */
+    public static DiffFormatter getDiffFormatter(Repository repository, ObjectReader reader) {
+        DiffFormatter diffFormatter = new DiffFormatter(DisabledOutputStream.INSTANCE);
+        diffFormatter.setReader(reader, repository.getConfig());
+        diffFormatter.setDetectRenames(true);
+        return diffFormatter;
+    }
+
     public static ObjectId getObjectIdFromRef(Ref ref) {
         if(ref.getPeeledObjectId() != null) {
             /* Annotated Tag */
@@ -0,0 +1,54 @@
+package utils;
+
+import logging.Metrics;
+import mydatatype.EditSummary;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Sorgente dei diff della storia di un repository, usata dalle feature e dall'indice dei ticket.
+ * Per ogni commit fornisce il riassunto delle modifiche ({@link EditSummary}) delle classi valide rispetto al primo padre,
+ * con le rinomine rilevate, nell'ordine delle DiffEntry di JGit. Tutte le implementazioni producono gli stessi riassunti:
+ * le EditList vengono sempre calcolate dal DiffFormatter di JGit e passano per la {@link DiffCache}.
+ * Le implementazioni sono thread safe e vanno chiuse a fine progetto.
+ */
+public interface HistoryBackend extends Closeable {
+    String JGIT = "jgit";
+    String GIT = "git";
+
+    /**
+     * Prepara in blocco i diff dei commit raggiungibili dai tips, per i backend che non lavorano un commit alla volta
+     * @param tips commit da cui partire, ad esempio i commit dei tag e HEAD
+     * @throws IOException
+     */
+    default void prefetch(List<ObjectId> tips) throws IOException {
+    }
+
+    /**
+     * @param commit commit con almeno un padre
+     * @return Ritorna il riassunto delle modifiche delle classi valide fatte dal commit rispetto al primo padre
+     * @throws IOException
+     */
+    List<EditSummary> getEditSummaries(RevCommit commit) throws IOException;
+
+    @Override
+    void close();
+
+    /**
+     * Crea il backend indicato da {@link Settings#getHistoryBackend()}: il DiffFormatter di JGit oppure l'eseguibile git locale,
+     * che in caso di errore ricade su JGit
+     * @param access accesso al repository, i cui reader vengono usati dal DiffFormatter
+     * @param metrics metriche del progetto, in cui contare hit e miss della {@link DiffCache}
+     */
+    static HistoryBackend create(RepositoryAccess access, Metrics metrics) {
+        JGitHistoryBackend jgit = new JGitHistoryBackend(access.getRepository(), access::getReader, metrics);
+        if(GIT.equalsIgnoreCase(Settings.getHistoryBackend())) {
+            return new GitCliHistoryBackend(access.getRepository(), Settings.getGitExecutable(), jgit);
+        }
+        return jgit;
+    }
+}
@@ -0,0 +1,69 @@
+package utils;
+
+import logging.Metrics;
+import mydatatype.EditSummary;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Supplier;
+
+/**
+ * Backend dei diff basato sul DiffFormatter di JGit, con rilevamento delle rinomine, passando per la {@link DiffCache}.
+ * Ogni thread usa il proprio DiffFormatter, costruito sul reader che il supplier restituisce per quel thread.
+ * Gli accessi alla cache vengono contati nelle metriche del progetto che usa il backend.
+ */
+public class JGitHistoryBackend implements HistoryBackend {
+    private final DiffCache diffCache;
+    private final Metrics metrics;
+    private final ThreadLocal<DiffFormatter> formatters;
+    private final Queue<DiffFormatter> opened = new ConcurrentLinkedQueue<>();
+
+    /**
+     * @param readers restituisce il reader del thread corrente, che non viene chiuso dal backend
+     */
+    public JGitHistoryBackend(Repository repository, Supplier<ObjectReader> readers) {
+        this(repository, readers, null);
+    }
+
+    /**
+     * @param readers restituisce il reader del thread corrente, che non viene chiuso dal backend
+     * @param metrics metriche del progetto in cui contare hit e miss della {@link DiffCache}; null per non contarli
+     */
+    public JGitHistoryBackend(Repository repository, Supplier<ObjectReader> readers, Metrics metrics) {
+        this.diffCache = DiffCache.getInstance(repository);
+        this.metrics = metrics;
+        this.formatters = ThreadLocal.withInitial(() -> {
+            DiffFormatter diffFormatter = GitUtils.getDiffFormatter(repository, readers.get());
+            this.opened.add(diffFormatter);
+            return diffFormatter;
+        });
+    }
+
+    @Override
+    public List<EditSummary> getEditSummaries(RevCommit commit) throws IOException {
+        return this.diffCache.getEditSummaries(commit, this.formatters.get(), null, this.metrics);
+    }
+
+    /**
+     * Come {@link #getEditSummaries(RevCommit)}, ma in caso di cache miss usa le DiffEntry passate in input invece di confrontare gli alberi
+     * @param entries DiffEntry del commit rispetto al primo padre, le stesse che il DiffFormatter troverebbe con il rilevamento delle rinomine
+     */
+    List<EditSummary> getEditSummaries(RevCommit commit, List<DiffEntry> entries) throws IOException {
+        return this.diffCache.getEditSummaries(commit, this.formatters.get(), entries, this.metrics);
+    }
+
+    @Override
+    public void close() {
+        DiffFormatter diffFormatter;
+        while((diffFormatter = this.opened.poll()) != null) {
+            diffFormatter.close();
+        }
+    }
+}
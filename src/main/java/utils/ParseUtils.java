@@ -1,13 +1,45 @@
 package utils;
 
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Date;
 
 public class ParseUtils {
+    /* DateTimeFormatter è immutabile e thread safe, quindi viene creato una sola volta */
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE;
+    private static final int DATE_LENGTH = 10;
+
     private ParseUtils() {}
+
+    /**
+     * @return Ritorna la mezzanotte (fuso orario locale) del giorno con cui inizia la stringa, ad esempio 2020-01-31T10:00:00.000+0000
+     */
     public static Date convertToDate(String date) throws ParseException {
-        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd");
-        return format.parse(date);
+        return new Date(ParseUtils.toEpochMillis(ParseUtils.toEpochDay(date)));
+    }
+
+    /**
+     * @return Ritorna il giorno con cui inizia la stringa come numero di giorni dal 1970-01-01
+     * @throws ParseException se la stringa non inizia con una data yyyy-MM-dd
+     */
+    public static long toEpochDay(String date) throws ParseException {
+        if(date.length() < DATE_LENGTH) {
+            throw new ParseException("Unparseable date: \"" + date + "\"", date.length());
+        }
+        try {
+            return LocalDate.parse(date.substring(0, DATE_LENGTH), DATE_FORMAT).toEpochDay();
+        } catch (DateTimeParseException e) {
+            throw new ParseException("Unparseable date: \"" + date + "\"", e.getErrorIndex());
+        }
+    }
+
+    /**
+     * @return Ritorna i millisecondi della mezzanotte (fuso orario locale) del giorno
+     */
+    public static long toEpochMillis(long epochDay) {
+        return LocalDate.ofEpochDay(epochDay).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
     }
 }
@@ -0,0 +1,114 @@
+package utils;
+
+import org.eclipse.jgit.lib.AsyncObjectLoaderQueue;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectReader;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Accesso agli oggetti di un repository. Ogni thread usa sempre lo stesso ObjectReader, così che le finestre dei pack
+ * e la cache delle basi delta già caricate vengano riusate tra una release e l'altra invece di aprire un reader per ogni operazione.
+ * I reader vengono chiusi tutti insieme da {@link #close()}; chi li ottiene con {@link #getReader()} non deve chiuderli.
+ */
+public class RepositoryAccess implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(RepositoryAccess.class.getName());
+    private static final long MB = 1024L * 1024L;
+
+    private final Repository repository;
+    private final ThreadLocal<ObjectReader> readers;
+    private final Queue<ObjectReader> opened = new ConcurrentLinkedQueue<>();
+    private volatile boolean closed;
+
+    public RepositoryAccess(Repository repository) {
+        this.repository = repository;
+        this.readers = ThreadLocal.withInitial(() -> {
+            ObjectReader reader = this.repository.newObjectReader();
+            this.opened.add(reader);
+            return reader;
+        });
+    }
+
+    /**
+     * Configura la cache dei pack di JGit, condivisa da tutti i repository della JVM, con i valori di {@link Settings}.
+     * Va chiamato prima di aprire i repository, dato che installare una nuova configurazione svuota la cache.
+     */
+    public static void configure() {
+        WindowCacheConfig config = new WindowCacheConfig();
+        config.setPackedGitLimit(Settings.getPackedGitLimitMb() * MB);
+        config.setPackedGitWindowSize(Settings.getPackedGitWindowKb() * 1024);
+        config.setDeltaBaseCacheLimit((int) Math.min(Integer.MAX_VALUE, Settings.getDeltaBaseCacheMb() * MB));
+        config.setPackedGitMMAP(Settings.isPackedGitMmap());
+        config.setPackedGitOpenFiles(Settings.getPackedGitOpenFiles());
+        config.install();
+        LOGGER.log(Level.INFO, () -> "Pack cache: limit " + Settings.getPackedGitLimitMb() + " MB, window " + Settings.getPackedGitWindowKb()
+                + " KB, delta base cache " + Settings.getDeltaBaseCacheMb() + " MB, mmap " + Settings.isPackedGitMmap());
+    }
+
+    public Repository getRepository() {
+        return repository;
+    }
+
+    /**
+     * @return Ritorna l'ObjectReader del thread corrente, creandolo al primo utilizzo
+     */
+    public ObjectReader getReader() {
+        if(this.closed) {
+            throw new IllegalStateException("Repository access already closed");
+        }
+        return this.readers.get();
+    }
+
+    /**
+     * Legge in blocco il contenuto dei blob passati in input con il reader del thread corrente
+     * @param blobIds blob da leggere
+     * @param consumer riceve il contenuto di ogni blob, nell'ordine scelto dal reader
+     * @throws IOException se un blob non esiste o non può essere letto
+     */
+    public void readBlobs(List<? extends ObjectId> blobIds, BlobConsumer consumer) throws IOException {
+        RepositoryAccess.readBlobs(this.getReader(), blobIds, consumer);
+    }
+
+    /**
+     * Come {@link #readBlobs(List, BlobConsumer)}, con il reader passato in input
+     */
+    public static void readBlobs(ObjectReader reader, List<? extends ObjectId> blobIds, BlobConsumer consumer) throws IOException {
+        if(blobIds.isEmpty()) return;
+        AsyncObjectLoaderQueue<? extends ObjectId> queue = reader.open(blobIds, true);
+        try {
+            while(queue.next()) {
+                consumer.accept(queue.getObjectId(), queue.open().getCachedBytes(Integer.MAX_VALUE));
+            }
+        } finally {
+            queue.release();
+        }
+    }
+
+    /**
+     * Chiude i reader aperti da tutti i thread
+     */
+    @Override
+    public void close() {
+        this.closed = true;
+        ObjectReader reader;
+        while((reader = this.opened.poll()) != null) {
+            reader.close();
+        }
+    }
+
+    /**
+     * Riceve il contenuto di un blob letto da {@link #readBlobs(List, BlobConsumer)}
+     */
+    @FunctionalInterface
+    public interface BlobConsumer {
+        void accept(ObjectId blobId, byte[] content) throws IOException;
+    }
+}
@@ -0,0 +1,222 @@
+package utils;
+
+/**
+ * Raccoglie le impostazioni della pipeline, lette dalle proprietà di sistema (-Dnome=valore)
+ * con un valore di default quando la proprietà non è presente o non è valida.
+ */
+public class Settings {
+    public static final String PARALLELISM = "dataset.parallelism";
+    public static final String DIFF_CACHE = "dataset.diffCache";
+    public static final String INCREMENTAL = "dataset.incremental";
+    public static final String BLOB_CACHE = "dataset.blobCache";
+    public static final String BLOB_CACHE_SIZE = "dataset.blobCacheSize";
+    public static final String JIRA_URL = "dataset.jiraUrl";
+    public static final String JIRA_PARALLELISM = "dataset.jiraParallelism";
+    public static final String JIRA_OFFLINE = "dataset.jiraOffline";
+    public static final String TICKET_STORE = "dataset.ticketStore";
+    public static final String PROJECT_PARALLELISM = "dataset.projectParallelism";
+    public static final String PROJECT_MEMORY = "dataset.projectMemoryMb";
+    public static final String MANIFEST = "dataset.manifest";
+    public static final String METRICS = "dataset.metrics";
+    public static final String JFR = "dataset.jfr";
+    public static final String PACKED_GIT_LIMIT = "dataset.packedGitLimitMb";
+    public static final String PACKED_GIT_WINDOW = "dataset.packedGitWindowKb";
+    public static final String DELTA_BASE_CACHE = "dataset.deltaBaseCacheMb";
+    public static final String PACKED_GIT_MMAP = "dataset.packedGitMmap";
+    public static final String PACKED_GIT_OPEN_FILES = "dataset.packedGitOpenFiles";
+    public static final String NAUTH_MODE = "dataset.nauthMode";
+    public static final String HISTORY_BACKEND = "dataset.historyBackend";
+    public static final String GIT_EXECUTABLE = "dataset.gitExecutable";
+    public static final String PIPELINE_QUEUE = "dataset.pipelineQueue";
+
+    private Settings() {}
+
+    /**
+     * @return il numero di thread del ForkJoinPool usato per calcolare le release in parallelo; 1 indica l'esecuzione sequenziale
+     */
+    public static int getParallelism() {
+        return Math.max(1, Settings.getInt(PARALLELISM, 1));
+    }
+
+    /**
+     * @return il numero massimo di release calcolate in attesa di essere scritte nel dataset; quando la coda è piena il calcolo delle feature si ferma
+     */
+    public static int getPipelineQueue() {
+        return Math.max(1, Settings.getInt(PIPELINE_QUEUE, 4));
+    }
+
+    /**
+     * @return true se i diff dei commit vanno letti e salvati nella cache su disco ({@link DiffCache})
+     */
+    public static boolean isDiffCacheEnabled() {
+        return Settings.getBoolean(DIFF_CACHE, true);
+    }
+
+    /**
+     * @return true se vanno calcolate solo le feature delle release nuove rispetto all'esecuzione precedente; le label vengono
+     * comunque ricalcolate su tutte le righe, così il dataset è uguale a una ricostruzione completa
+     */
+    public static boolean isIncremental() {
+        return Settings.getBoolean(INCREMENTAL, false);
+    }
+
+    /**
+     * @return true se il LOC dei blob va letto e salvato nella cache su disco ({@link BlobLineCountCache})
+     */
+    public static boolean isBlobCacheEnabled() {
+        return Settings.getBoolean(BLOB_CACHE, true);
+    }
+
+    /**
+     * @return il numero massimo di blob tenuti in memoria dalla cache LRU del LOC
+     */
+    public static int getBlobCacheSize() {
+        return Math.max(1, Settings.getInt(BLOB_CACHE_SIZE, 1 << 20));
+    }
+
+    /**
+     * @return l'url base di jira, ad esempio quello di un server locale che risponde con le pagine registrate
+     */
+    public static String getJiraUrl() {
+        return Settings.getString(JIRA_URL, "https://issues.apache.org/jira");
+    }
+
+    /**
+     * @return il numero massimo di pagine della ricerca jira scaricate in parallelo
+     */
+    public static int getJiraParallelism() {
+        return Math.max(1, Settings.getInt(JIRA_PARALLELISM, 4));
+    }
+
+    /**
+     * @return true se i ticket vanno letti solo dallo store locale, senza contattare jira
+     */
+    public static boolean isJiraOffline() {
+        return Settings.getBoolean(JIRA_OFFLINE, false);
+    }
+
+    /**
+     * @return true se i ticket scaricati vanno salvati nello store locale e aggiornati solo con quelli modificati
+     */
+    public static boolean isTicketStoreEnabled() {
+        return Settings.getBoolean(TICKET_STORE, true);
+    }
+
+    /**
+     * @return il numero massimo di progetti elaborati in parallelo, ognuno su un proprio thread; 1 indica l'esecuzione sequenziale
+     */
+    public static int getProjectParallelism() {
+        return Math.max(1, Settings.getInt(PROJECT_PARALLELISM, Runtime.getRuntime().availableProcessors()));
+    }
+
+    /**
+     * @return la memoria stimata in MB per elaborare un progetto, usata per limitare i progetti in parallelo alla memoria della JVM
+     */
+    public static int getProjectMemoryMb() {
+        return Math.max(1, Settings.getInt(PROJECT_MEMORY, 512));
+    }
+
+    /**
+     * @return il manifest csv dei progetti da elaborare, null per elaborare i progetti predefiniti
+     */
+    public static String getManifest() {
+        return Settings.getString(MANIFEST, null);
+    }
+
+    /**
+     * @return true se a fine progetto va scritto il report delle metriche &lt;progetto&gt;_metrics.json
+     */
+    public static boolean isMetricsEnabled() {
+        return Settings.getBoolean(METRICS, true);
+    }
+
+    /**
+     * @return true se le fasi della pipeline vanno emesse anche come eventi JFR
+     */
+    public static boolean isJfrEnabled() {
+        return Settings.getBoolean(JFR, false);
+    }
+
+    /**
+     * @return la memoria massima in MB delle finestre dei pack tenute in cache da JGit (il default di JGit è 10 MB)
+     */
+    public static int getPackedGitLimitMb() {
+        return Math.max(1, Settings.getInt(PACKED_GIT_LIMIT, 256));
+    }
+
+    /**
+     * @return la dimensione in KB di una finestra di pack, deve essere una potenza di 2
+     */
+    public static int getPackedGitWindowKb() {
+        int window = Math.max(4, Settings.getInt(PACKED_GIT_WINDOW, 8));
+        return Integer.highestOneBit(window);
+    }
+
+    /**
+     * @return la memoria massima in MB della cache delle basi delta di ogni reader
+     */
+    public static int getDeltaBaseCacheMb() {
+        return Math.max(1, Settings.getInt(DELTA_BASE_CACHE, 64));
+    }
+
+    /**
+     * @return true se i pack vanno letti con mmap invece che con letture su heap
+     */
+    public static boolean isPackedGitMmap() {
+        return Settings.getBoolean(PACKED_GIT_MMAP, false);
+    }
+
+    /**
+     * @return il numero massimo di file pack tenuti aperti contemporaneamente
+     */
+    public static int getPackedGitOpenFiles() {
+        return Math.max(1, Settings.getInt(PACKED_GIT_OPEN_FILES, 128));
+    }
+
+    /**
+     * @return true se NAUTH conta gli autori di tutte le release fino a quella della riga (cumulative, default),
+     * false se conta solo gli autori della release (release)
+     */
+    public static boolean isNauthCumulative() {
+        return !"release".equalsIgnoreCase(Settings.getString(NAUTH_MODE, "cumulative"));
+    }
+
+    /**
+     * @return il backend da cui leggere i diff della storia: jgit (default) oppure git, che usa l'eseguibile locale
+     * per trovare i file modificati da ogni commit ({@link GitCliHistoryBackend}). Il backend git è sperimentale: coincide con jgit
+     * sul repository di prova di GitCliHistoryBackendTest ma non è ancora stato validato sui repository reali, quindi i dataset
+     * costruiti con git non vanno confrontati con quelli costruiti con jgit
+     */
+    public static String getHistoryBackend() {
+        return Settings.getString(HISTORY_BACKEND, HistoryBackend.JGIT);
+    }
+
+    /**
+     * @return l'eseguibile git usato dal backend git
+     */
+    public static String getGitExecutable() {
+        return Settings.getString(GIT_EXECUTABLE, "git");
+    }
+
+    public static String getString(String name, String defaultValue) {
+        String value = System.getProperty(name);
+        if(value == null || value.trim().isEmpty()) return defaultValue;
+        return value.trim();
+    }
+
+    public static int getInt(String name, int defaultValue) {
+        String value = System.getProperty(name);
+        if(value == null) return defaultValue;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public static boolean getBoolean(String name, boolean defaultValue) {
+        String value = System.getProperty(name);
+        if(value == null) return defaultValue;
+        return Boolean.parseBoolean(value.trim());
+    }
+}
@@ -2,156 +2,140 @@ package utils;
 
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 /**
  * This class  counts the number of source code lines by excluding comments, in a Java file
- * The pseudocode is as below
+ * A line is a source code line if it contains at least one non blank character outside of comments.
+ * The count is done in a single pass over the raw bytes of the file with a state machine, without allocating per line:
  *
- * Initial: Set count = 0, commentBegan = false
- * Start: Read line
- * Begin: If line is not null, goto Check, else goto End
- * Check: If line is a trivial line(after trimming, either begins with // or is ""), goto Start
- *        If commentBegan = true
- *             if comment has not ended in line 
- *                goto Start
- *              else 
- *                line = what remains in the line after comment ends
- *                commenBegan = false
- *                if line is trivial
- *                   goto Start
- * 		  If line is a valid source code line, count++
- *        If comment has begun in the line, set commentBegan = true
- *        goto Start
- * End: print count
+ * CODE:          "//" goes to LINE_COMMENT, "/*" goes to BLOCK_COMMENT, "\"\"\"" goes to TEXT_BLOCK,
+ *                '"' goes to STRING, '\'' goes to CHAR, any other non blank character marks the line as code
+ * LINE_COMMENT:  ends at the end of the line
+ * BLOCK_COMMENT: ends at the first "*&#47;"
+ * STRING, CHAR:  end at the closing unescaped quote (or at the end of the line if unterminated), their content is code
+ * TEXT_BLOCK:    ends at the closing unescaped "\"\"\"", its non blank content is code
+ * End of line:   if the line has been marked as code, count++
+ *
+ * Bytes greater than 0x7F belong to multi byte UTF-8 characters, which are never blank or delimiters.
  */
 public class SourceCodeLineCounter {
+    private static final int CODE = 0;
+    private static final int LINE_COMMENT = 1;
+    private static final int BLOCK_COMMENT = 2;
+    private static final int STRING = 3;
+    private static final int CHAR = 4;
+    private static final int TEXT_BLOCK = 5;
+
     private SourceCodeLineCounter() {}
+
     public static int getNumberOfLines(BufferedReader bReader)
             throws IOException {
-        int count = 0;
-        boolean commentBegan = false;
-        String line = null;
-
-        while ((line = bReader.readLine()) != null) {
-            line = line.trim();
-            if ("".equals(line) || line.startsWith("//")) {
-                continue;
-            }
-            if (commentBegan) {
-                if (commentEnded(line)) {
-                    line = line.substring(line.indexOf("*/") + 2).trim();
-                    commentBegan = false;
-                    if ("".equals(line) || line.startsWith("//")) {
-                        continue;
-                    }
-                } else
-                    continue;
-            }
-            if (isSourceCodeLine(line)) {
-                count++;
-            }
-            if (commentBegan(line)) {
-                commentBegan = true;
-            }
+        StringBuilder source = new StringBuilder();
+        char[] buffer = new char[8192];
+        int read;
+        while ((read = bReader.read(buffer)) != -1) {
+            source.append(buffer, 0, read);
         }
-        return count;
+        return getNumberOfLines(source.toString().getBytes(StandardCharsets.UTF_8));
     }
 
-    /**
-     *
-     * @param line
-     * @return This method checks if in the given line a comment has begun and has not ended
-     */
-    private static boolean commentBegan(String line) {
-        // If line = /* */, this method will return false
-        // If line = /* */ /*, this method will return true
-        int index = line.indexOf("/*");
-        if (index < 0) {
-            return false;
-        }
-        int quoteStartIndex = line.indexOf("\"");
-        if (quoteStartIndex != -1 && quoteStartIndex < index) {
-            while (quoteStartIndex > -1) {
-                line = line.substring(quoteStartIndex + 1);
-                int quoteEndIndex = line.indexOf("\"");
-                line = line.substring(quoteEndIndex + 1);
-                quoteStartIndex = line.indexOf("\"");
-            }
-            return commentBegan(line);
-        }
-        return !commentEnded(line.substring(index + 2));
+    public static int getNumberOfLines(byte[] source) {
+        return getNumberOfLines(source, 0, source.length);
     }
 
     /**
      *
-     * @param line
-     * @return This method checks if in the given line a comment has ended and no new comment has not begun
+     * @param source raw bytes of the file, for example from ObjectLoader.getCachedBytes
+     * @param offset index of the first byte to scan
+     * @param length number of bytes to scan
+     * @return This method returns the number of lines that contain source code
      */
-    private static boolean commentEnded(String line) {
-        // If line = */ /* , this method will return false
-        // If line = */ /* */, this method will return true
-        int index = line.indexOf("*/");
-        if (index < 0) {
-            return false;
-        } else {
-            String subString = line.substring(index + 2).trim();
-            if ("".equals(subString) || subString.startsWith("//")) {
-                return true;
-            }
-            if(commentBegan(subString))
-            {
-                return false;
+    public static int getNumberOfLines(byte[] source, int offset, int length) {
+        int count = 0;
+        int state = CODE;
+        boolean isSourceCodeLine = false;
+        int end = offset + length;
+
+        for (int i = offset; i < end; i++) {
+            int b = source[i] & 0xFF;
+            if (b == '\n' || b == '\r') {
+                if (isSourceCodeLine) {
+                    count++;
+                }
+                isSourceCodeLine = false;
+                if (b == '\r' && i + 1 < end && source[i + 1] == '\n') {
+                    i++;
+                }
+                if (state == LINE_COMMENT || state == STRING || state == CHAR) {
+                    state = CODE;
+                }
+                continue;
             }
-            else
-            {
-                return true;
+            int next = i + 1 < end ? source[i + 1] & 0xFF : -1;
+            switch (state) {
+                case CODE:
+                    if (b == '/' && next == '/') {
+                        state = LINE_COMMENT;
+                        i++;
+                    } else if (b == '/' && next == '*') {
+                        state = BLOCK_COMMENT;
+                        i++;
+                    } else if (b == '"') {
+                        isSourceCodeLine = true;
+                        if (next == '"' && i + 2 < end && source[i + 2] == '"') {
+                            state = TEXT_BLOCK;
+                            i += 2;
+                        } else {
+                            state = STRING;
+                        }
+                    } else if (b == '\'') {
+                        isSourceCodeLine = true;
+                        state = CHAR;
+                    } else if (b > ' ') {
+                        isSourceCodeLine = true;
+                    }
+                    break;
+                case BLOCK_COMMENT:
+                    if (b == '*' && next == '/') {
+                        state = CODE;
+                        i++;
+                    }
+                    break;
+                case STRING:
+                case CHAR:
+                    if (b == '\\') {
+                        i += skipEscaped(next);
+                    } else if (b == (state == STRING ? '"' : '\'')) {
+                        state = CODE;
+                    }
+                    break;
+                case TEXT_BLOCK:
+                    if (b > ' ') {
+                        isSourceCodeLine = true;
+                    }
+                    if (b == '\\') {
+                        i += skipEscaped(next);
+                    } else if (b == '"' && next == '"' && i + 2 < end && source[i + 2] == '"') {
+                        state = CODE;
+                        i += 2;
+                    }
+                    break;
+                default:
+                    /* LINE_COMMENT: everything is ignored until the end of the line */
+                    break;
             }
         }
+        if (isSourceCodeLine) {
+            count++;
+        }
+        return count;
     }
 
     /**
-     *
-     * @param line
-     * @return This method returns true if there is any valid source code in the given input line. It does not worry if comment has begun or not.
-     * This method will work only if we are sure that comment has not already begun previously. Hence, this method should be called only after {@link #commentBegan(String)} is called
+     * @return This method returns how many bytes an escape sequence skips after the backslash: the escaped character, unless it is a line terminator
      */
-    private static boolean isSourceCodeLine(String line) {
-        boolean isSourceCodeLine = false;
-        line = line.trim();
-        if ("".equals(line) || line.startsWith("//")) {
-            return isSourceCodeLine;
-        }
-        if (line.length() == 1) {
-            return true;
-        }
-        int index = line.indexOf("/*");
-        if (index != 0) {
-            return true;
-        } else {
-            while (line.length() > 0) {
-                line = line.substring(index + 2);
-                int endCommentPosition = line.indexOf("*/");
-                if (endCommentPosition < 0) {
-                    return false;
-                }
-                if (endCommentPosition == line.length() - 2) {
-                    return false;
-                } else {
-                    String subString = line.substring(endCommentPosition + 2)
-                            .trim();
-                    if ("".equals(subString) || subString.indexOf("//") == 0) {
-                        return false;
-                    } else {
-                        if (subString.startsWith("/*")) {
-                            line = subString;
-                            continue;
-                        }
-                        return true;
-                    }
-                }
-
-            }
-        }
-        return isSourceCodeLine;
+    private static int skipEscaped(int next) {
+        return (next == -1 || next == '\n' || next == '\r') ? 0 : 1;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,157 @@
+package labeling;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Scarica i ticket da un server HTTP locale che risponde con pagine registrate: il server restituisce al massimo
+ * {@link #SERVER_PAGE} ticket per pagina, l'ultima pagina è corta e la seconda pagina arriva dopo la terza.
+ * Verifica i ticket riuniti nello store e l'aggiornamento successivo, che parte dall'ultimo scaricamento e non dalle date dei ticket.
+ */
+class TicketFetcherTest {
+    private static final String PROJECT = "PRJ";
+    private static final int SERVER_PAGE = 3;
+    private static final DateTimeFormatter JQL_DATE = DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm");
+    /* Date di modifica nel futuro: un aggiornamento che partisse dai ticket salvati non le supererebbe mai */
+    private static final String UPDATED = "2030-01-01T00:00:00.000+0000";
+
+    @TempDir
+    Path directory;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private final List<JSONObject> fullSearch = new ArrayList<>();
+    private final List<JSONObject> updatedSearch = new ArrayList<>();
+    private final List<String> queries = Collections.synchronizedList(new ArrayList<>());
+    private final List<Integer> servedPages = Collections.synchronizedList(new ArrayList<>());
+    private final CountDownLatch lastPageServed = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() throws IOException {
+        for(int i = 1; i <= 7; i++) {
+            this.fullSearch.add(TicketFetcherTest.issue(PROJECT + "-" + i, "Bug", "Closed", "Fixed", UPDATED));
+        }
+        this.updatedSearch.add(TicketFetcherTest.issue(PROJECT + "-2", "Bug", "Reopened", null, UPDATED));
+        this.updatedSearch.add(TicketFetcherTest.issue(PROJECT + "-3", "Bug", "Resolved", "Fixed", "2030-02-01T00:00:00.000+0000"));
+        this.updatedSearch.add(TicketFetcherTest.issue(PROJECT + "-8", "Bug", "Closed", "Fixed", UPDATED));
+        this.updatedSearch.add(TicketFetcherTest.issue(PROJECT + "-9", "Improvement", "Closed", "Fixed", UPDATED));
+
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        this.server.createContext("/rest/api/2/search", this::search);
+        this.serverExecutor = Executors.newFixedThreadPool(4);
+        this.server.setExecutor(this.serverExecutor);
+        this.server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        this.server.stop(0);
+        this.serverExecutor.shutdownNow();
+    }
+
+    @Test
+    void fetchMergesPagesAndRefreshesFromLastFetch() throws Exception {
+        File file = this.directory.resolve("prj_tickets.jsonl").toFile();
+        TicketFetcher fetcher = new TicketFetcher("http://127.0.0.1:" + this.server.getAddress().getPort() + "/", 4, 100);
+
+        TicketStore store = new TicketStore(file);
+        Map<String, JSONObject> tickets = store.load();
+        Instant firstFetch = RetrieveTicketsID.update(PROJECT, tickets, store, fetcher);
+        store.save(tickets.values(), firstFetch);
+
+        assertEquals(Arrays.asList(0, 6, 3), this.servedPages, "the second page must arrive after the short last page");
+        assertFalse(this.queries.get(0).contains("updated>="));
+        TicketStore reloaded = new TicketStore(file);
+        assertEquals(Arrays.asList("PRJ-1", "PRJ-2", "PRJ-3", "PRJ-4", "PRJ-5", "PRJ-6", "PRJ-7"), new ArrayList<>(reloaded.load().keySet()));
+        assertEquals(firstFetch, reloaded.getLastFetch());
+
+        this.queries.clear();
+        tickets = reloaded.load();
+        Instant secondFetch = RetrieveTicketsID.update(PROJECT, tickets, reloaded, fetcher);
+        reloaded.save(tickets.values(), secondFetch);
+
+        String anchor = firstFetch.atOffset(ZoneOffset.UTC).minusDays(1).format(JQL_DATE);
+        assertEquals(2, this.queries.size());
+        for(String jql : this.queries) {
+            assertTrue(jql.contains("updated>=\"" + anchor + "\""), jql);
+        }
+        Map<String, JSONObject> merged = new TicketStore(file).load();
+        assertEquals(Arrays.asList("PRJ-1", "PRJ-3", "PRJ-4", "PRJ-5", "PRJ-6", "PRJ-7", "PRJ-8"), new ArrayList<>(merged.keySet()));
+        assertEquals("2030-02-01T00:00:00.000+0000", merged.get("PRJ-3").getJSONObject("fields").getString("updated"));
+        assertFalse(secondFetch.isBefore(firstFetch));
+    }
+
+    private void search(HttpExchange exchange) throws IOException {
+        Map<String, String> query = new HashMap<>();
+        for(String parameter : exchange.getRequestURI().getRawQuery().split("&")) {
+            int split = parameter.indexOf('=');
+            query.put(parameter.substring(0, split), URLDecoder.decode(parameter.substring(split + 1), StandardCharsets.UTF_8));
+        }
+        String jql = query.get("jql");
+        int startAt = Integer.parseInt(query.get("startAt"));
+        int maxResults = Math.min(SERVER_PAGE, Integer.parseInt(query.get("maxResults")));
+        this.queries.add(jql);
+        List<JSONObject> issues = jql.contains("updated>=") ? this.updatedSearch : this.fullSearch;
+
+        /* La seconda pagina della ricerca completa attende che sia stata servita l'ultima */
+        if(issues == this.fullSearch && startAt == SERVER_PAGE) {
+            try {
+                this.lastPageServed.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        JSONArray page = new JSONArray();
+        for(int i = startAt; i < Math.min(issues.size(), startAt + maxResults); i++) {
+            page.put(issues.get(i));
+        }
+        byte[] body = new JSONObject().put("startAt", startAt).put("maxResults", maxResults).put("total", issues.size())
+                .put("issues", page).toString().getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(200, body.length);
+        try(OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+        if(issues == this.fullSearch) {
+            this.servedPages.add(startAt);
+            if(startAt + maxResults >= issues.size()) this.lastPageServed.countDown();
+        }
+    }
+
+    private static JSONObject issue(String key, String type, String status, String resolution, String updated) {
+        JSONObject fields = new JSONObject()
+                .put("issuetype", new JSONObject().put("name", type))
+                .put("status", new JSONObject().put("name", status))
+                .put("resolution", resolution != null ? new JSONObject().put("name", resolution) : JSONObject.NULL)
+                .put("created", "2020-09-07T02:00:00.000+0000")
+                .put("resolutiondate", "2020-10-30T02:00:00.000+0000")
+                .put("updated", updated)
+                .put("versions", new JSONArray().put(new JSONObject().put("name", "1.0.0")));
+        return new JSONObject().put("key", key).put("fields", fields);
+    }
+}
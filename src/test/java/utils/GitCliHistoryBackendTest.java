@@ -0,0 +1,267 @@
+package utils;
+
+import mydatatype.EditSummary;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.dircache.DirCache;
+import org.eclipse.jgit.dircache.DirCacheBuilder;
+import org.eclipse.jgit.dircache.DirCacheEntry;
+import org.eclipse.jgit.lib.*;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * Confronta commit per commit i riassunti del backend git con quelli del backend JGit su un repository di prova.
+ * La storia contiene modifiche ambigue (righe ripetute su cui git e JGit allineano diversamente gli hunk), file aggiunti,
+ * cancellati, rinominati, binari, con cambio di modo o di tipo, path con spazi, virgolette e caratteri non ASCII e un merge.
+ */
+class GitCliHistoryBackendTest {
+    private static final String[] LINES = {"    int value = 0;", "    }", "    /**", "     */", "", "    public void run() {", "    return;"};
+
+    private File directory;
+    private Git git;
+    private final Map<String, DirCacheEntry> tree = new TreeMap<>();
+    private final Map<String, byte[]> contents = new HashMap<>();
+    private final Map<String, FileMode> modes = new HashMap<>();
+    private final Set<ObjectId> mixedCommits = new HashSet<>();
+    private long time = 1_500_000_000_000L;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        assumeTrue(GitCliHistoryBackendTest.isGitAvailable(), "git executable not found");
+        this.directory = Files.createTempDirectory("history-backend").toFile();
+        this.git = Git.init().setDirectory(this.directory).call();
+    }
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if(this.git != null) this.git.close();
+        if(this.directory != null) org.eclipse.jgit.util.FileUtils.delete(this.directory, org.eclipse.jgit.util.FileUtils.RECURSIVE);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"histogram", "myers"})
+    void summariesMatchJGit(String algorithm) throws Exception {
+        ObjectId head = this.buildHistory();
+        StoredConfig config = this.git.getRepository().getConfig();
+        config.setString(ConfigConstants.CONFIG_DIFF_SECTION, null, ConfigConstants.CONFIG_KEY_ALGORITHM, algorithm);
+        config.save();
+
+        Repository repository = this.git.getRepository();
+        List<RevCommit> history = new ArrayList<>();
+        try(RevWalk walk = new RevWalk(repository)) {
+            walk.markStart(walk.parseCommit(head));
+            for(RevCommit commit : walk) {
+                if(commit.getParentCount() > 0) history.add(commit);
+            }
+        }
+
+        Map<ObjectId, String> fromGit = new HashMap<>();
+        int prefetched = 0;
+        DiffCache.acquire(repository);
+        try(ObjectReader reader = repository.newObjectReader();
+            GitCliHistoryBackend backend = new GitCliHistoryBackend(repository, "git", new JGitHistoryBackend(repository, () -> reader))) {
+            backend.prefetch(Collections.singletonList(head));
+            for(RevCommit commit : history) {
+                fromGit.put(commit, backend.getEditSummaries(commit).toString());
+                if(backend.isPrefetched(commit)) prefetched++;
+                if(this.mixedCommits.contains(commit)) {
+                    assertFalse(backend.isPrefetched(commit), "commit " + commit.name() + " deletes or retypes a file and must be left to JGit");
+                }
+            }
+        } finally {
+            DiffCache.release(repository);
+        }
+
+        Map<ObjectId, String> fromJGit = new HashMap<>();
+        DiffCache.acquire(repository);
+        try(ObjectReader reader = repository.newObjectReader();
+            JGitHistoryBackend backend = new JGitHistoryBackend(repository, () -> reader)) {
+            for(RevCommit commit : history) {
+                List<EditSummary> summaries = backend.getEditSummaries(commit);
+                fromJGit.put(commit, summaries.toString());
+            }
+        } finally {
+            DiffCache.release(repository);
+        }
+
+        for(RevCommit commit : history) {
+            assertEquals(fromJGit.get(commit), fromGit.get(commit), "summaries of commit " + commit.name() + " (" + commit.getShortMessage() + ")");
+        }
+        assertTrue(prefetched > history.size() / 2, "only " + prefetched + " of " + history.size() + " commits were read from git log");
+    }
+
+    /**
+     * @return Ritorna HEAD della storia di prova
+     */
+    private ObjectId buildHistory() throws IOException {
+        Random random = new Random(7);
+        for(int i = 0; i < 12; i++) {
+            this.put("src/main/java/pkg/Class" + i + ".java", this.randomLines(random, 30));
+        }
+        this.put("src/test/java/pkg/Class0Test.java", this.randomLines(random, 10));
+        this.put("README.md", "readme\n");
+        this.put("src/main/java/pkg/Spazio Classe.java", this.randomLines(random, 5));
+        this.put("src/main/java/pkg/Città.java", this.randomLines(random, 5));
+        this.put("src/main/java/pkg/Quote\"d.java", this.randomLines(random, 5));
+        this.put("src/main/java/pkg/NoNewline.java", "class A {\n}");
+        this.put("src/main/java/pkg/Crlf.java", "class B {\r\n    int x;\r\n}\r\n");
+        ObjectId parent = this.commit("initial");
+
+        /* Modifiche casuali su righe ripetute: con -U0 git e JGit dividerebbero diversamente alcuni hunk */
+        for(int c = 0; c < 60; c++) {
+            for(int e = 0; e < 4; e++) {
+                String path = "src/main/java/pkg/Class" + random.nextInt(12) + ".java";
+                List<String> lines = new ArrayList<>(Arrays.asList(new String(this.contents.get(path), StandardCharsets.UTF_8).split("\n", -1)));
+                int line = random.nextInt(lines.size());
+                int operation = random.nextInt(3);
+                if(operation == 0 || lines.size() < 5) {
+                    lines.add(line, LINES[random.nextInt(LINES.length)]);
+                } else if(operation == 1) {
+                    lines.remove(line);
+                } else {
+                    lines.set(line, LINES[random.nextInt(LINES.length)]);
+                }
+                this.put(path, String.join("\n", lines));
+            }
+            if(c % 10 == 3) this.put("src/main/java/pkg/Added" + c + ".java", this.randomLines(random, 8));
+            parent = this.commit("edit " + c, parent);
+        }
+
+        this.put("src/main/java/pkg/Spazio Classe.java", this.randomLines(random, 6));
+        this.put("src/main/java/pkg/Città.java", this.randomLines(random, 6));
+        this.put("src/main/java/pkg/Quote\"d.java", this.randomLines(random, 6));
+        this.put("src/main/java/pkg/NoNewline.java", "class A {\n    int y;\n}");
+        this.put("src/main/java/pkg/Crlf.java", "class B {\r\n    int x;\r\n    int y;\r\n}\r\n");
+        parent = this.commit("special paths", parent);
+
+        this.modes.put("src/main/java/pkg/Class1.java", FileMode.EXECUTABLE_FILE);
+        this.put("src/main/java/pkg/Class1.java", new String(this.contents.get("src/main/java/pkg/Class1.java"), StandardCharsets.UTF_8));
+        parent = this.commit("mode change", parent);
+
+        this.put("src/main/java/pkg/Binary.java", "class C {\u0000\u0001}\n");
+        parent = this.commit("binary", parent);
+        this.put("src/main/java/pkg/Binary.java", "class C {\u0000\u0002}\nmore\n");
+        parent = this.commit("binary change", parent);
+
+        this.remove("src/main/java/pkg/Class2.java");
+        parent = this.mixed(this.commit("delete", parent));
+
+        String renamed = new String(this.contents.get("src/main/java/pkg/Class3.java"), StandardCharsets.UTF_8);
+        this.remove("src/main/java/pkg/Class3.java");
+        this.put("src/main/java/moved/Class3.java", renamed + "\n    int moved;");
+        parent = this.mixed(this.commit("rename", parent));
+
+        String fromTest = new String(this.contents.get("src/test/java/pkg/Class0Test.java"), StandardCharsets.UTF_8);
+        this.remove("src/test/java/pkg/Class0Test.java");
+        this.put("src/main/java/pkg/Helper.java", fromTest);
+        parent = this.mixed(this.commit("rename from a test", parent));
+
+        this.modes.put("src/main/java/pkg/Class4.java", FileMode.SYMLINK);
+        this.put("src/main/java/pkg/Class4.java", "Class5.java");
+        parent = this.mixed(this.commit("type change", parent));
+
+        parent = this.commit("empty", parent);
+
+        /* Merge: il diff è rispetto al primo padre, che non contiene le modifiche del ramo */
+        ObjectId base = parent;
+        Map<String, DirCacheEntry> baseTree = new TreeMap<>(this.tree);
+        Map<String, byte[]> baseContents = new HashMap<>(this.contents);
+        this.put("src/main/java/pkg/Side.java", this.randomLines(random, 7));
+        this.put("src/main/java/pkg/Class5.java", this.randomLines(random, 20));
+        ObjectId side = this.commit("side", base);
+        Map<String, DirCacheEntry> sideTree = new TreeMap<>(this.tree);
+        this.tree.clear();
+        this.tree.putAll(baseTree);
+        this.contents.clear();
+        this.contents.putAll(baseContents);
+        this.put("src/main/java/pkg/Class6.java", this.randomLines(random, 20));
+        ObjectId main = this.commit("main", base);
+        DirCacheEntry mainOnly = this.tree.get("src/main/java/pkg/Class6.java");
+        this.tree.putAll(sideTree);
+        this.tree.put("src/main/java/pkg/Class6.java", mainOnly);
+        return this.commit("merge", main, side);
+    }
+
+    private ObjectId mixed(ObjectId commit) {
+        this.mixedCommits.add(commit);
+        return commit;
+    }
+
+    private String randomLines(Random random, int count) {
+        StringBuilder builder = new StringBuilder("public class C {\n");
+        for(int i = 0; i < count; i++) {
+            builder.append(LINES[random.nextInt(LINES.length)]).append('\n');
+        }
+        return builder.append("}\n").toString();
+    }
+
+    private void put(String path, String content) throws IOException {
+        byte[] bytes = content.getBytes(StandardCharsets.UTF_8);
+        this.contents.put(path, bytes);
+        try(ObjectInserter inserter = this.git.getRepository().newObjectInserter()) {
+            DirCacheEntry entry = new DirCacheEntry(path);
+            entry.setFileMode(this.modes.getOrDefault(path, FileMode.REGULAR_FILE));
+            entry.setObjectId(inserter.insert(Constants.OBJ_BLOB, bytes));
+            inserter.flush();
+            this.tree.put(path, entry);
+        }
+    }
+
+    private void remove(String path) {
+        this.tree.remove(path);
+        this.contents.remove(path);
+        this.modes.remove(path);
+    }
+
+    private ObjectId commit(String message, ObjectId... parents) throws IOException {
+        Repository repository = this.git.getRepository();
+        try(ObjectInserter inserter = repository.newObjectInserter()) {
+            DirCache dirCache = DirCache.newInCore();
+            DirCacheBuilder builder = dirCache.builder();
+            for(DirCacheEntry entry : this.tree.values()) {
+                builder.add(entry);
+            }
+            builder.finish();
+            PersonIdent ident = new PersonIdent("Alice", "alice@example.org", new Date(this.time), TimeZone.getTimeZone("UTC"));
+            this.time += 3_600_000L;
+            CommitBuilder commit = new CommitBuilder();
+            commit.setTreeId(dirCache.writeTree(inserter));
+            for(ObjectId parent : parents) {
+                commit.addParentId(parent);
+            }
+            commit.setAuthor(ident);
+            commit.setCommitter(ident);
+            commit.setMessage(message + "\n");
+            ObjectId id = inserter.insert(commit);
+            inserter.flush();
+            RefUpdate refUpdate = repository.updateRef(Constants.HEAD);
+            refUpdate.setNewObjectId(id);
+            refUpdate.forceUpdate();
+            return id;
+        }
+    }
+
+    private static boolean isGitAvailable() {
+        try {
+            return new ProcessBuilder("git", "--version").redirectErrorStream(true).start().waitFor() == 0;
+        } catch (IOException e) {
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}